@@ -2,19 +2,22 @@ package com.stevecrew.callloganalyzer;
 
 import android.graphics.Color;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -28,6 +31,7 @@ import java.util.Locale;
  * - Intelligente Datumsformatierung ("Heute", "Gestern", oder Datum)
  * - Farbige Typ-Indikatoren (grün/blau/orange/rot)
  * - Tap auf Eintrag zeigt Detail-Dialog
+ * - Suche beim Tippen über Namen und Nummern (Index, im Hintergrund)
  * 
  * Wird als zweiter Tab in MainActivity angezeigt.
  */
@@ -36,6 +40,8 @@ public class AllCallsFragment extends Fragment {
     private RecyclerView recyclerView;
     private CallAdapter adapter;
     private TextView tvEmpty;  // Wird angezeigt wenn keine Anrufe vorhanden
+    private EditText etSearch;
+    private String currentQuery = "";  // Aktueller Suchtext ("" = alle Anrufe)
 
     @Nullable
     @Override
@@ -45,12 +51,28 @@ public class AllCallsFragment extends Fragment {
         // UI-Elemente verbinden
         recyclerView = view.findViewById(R.id.recyclerViewCalls);
         tvEmpty = view.findViewById(R.id.tvEmpty);
+        etSearch = view.findViewById(R.id.etSearch);
         
         // RecyclerView konfigurieren
         recyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
         adapter = new CallAdapter();
         recyclerView.setAdapter(adapter);
         
+        // Suche bei jeder Eingabe (CallLogHelper entprellt und sucht im Hintergrund)
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                currentQuery = s.toString();
+                updateUI();
+            }
+        });
+        
         return view;
     }
 
@@ -70,21 +92,33 @@ public class AllCallsFragment extends Fragment {
      * - Fragment wird sichtbar (onResume)
      * - Zeitfilter wird geändert
      * - Neuer Anruf kommt rein (via ContentObserver)
+     * - Suchtext wird geändert
+     * 
+     * Mit Suchtext kommen die Treffer asynchron (showCalls()).
      */
     public void updateUI() {
         MainActivity activity = (MainActivity) getActivity();
         if (activity == null || activity.getCallLogHelper() == null) return;
         
-        List<CallLogEntry> calls = activity.getCallLogHelper().getAllCalls();
+        activity.getCallLogHelper().searchCalls(currentQuery, this::showCalls);
+    }
+
+    /**
+     * Zeigt die Anrufe (bzw. Suchtreffer) in der Liste an.
+     */
+    private void showCalls(String query, List<CallLogEntry> calls) {
+        if (getView() == null) return;  // Fragment inzwischen entfernt
+        adapter.setCalls(calls);
         
         // Leere Liste → Hinweis anzeigen, RecyclerView verstecken
         if (calls.isEmpty()) {
+            tvEmpty.setText(query.trim().isEmpty() ? "Keine Anrufe gefunden"
+                    : "Keine Treffer für \"" + query.trim() + "\"");
             tvEmpty.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
             tvEmpty.setVisibility(View.GONE);
             recyclerView.setVisibility(View.VISIBLE);
-            adapter.setCalls(calls);
         }
     }
 
@@ -95,22 +129,29 @@ public class AllCallsFragment extends Fragment {
      * - Nur sichtbare Items werden im Speicher gehalten
      * - Beim Scrollen werden Views wiederverwendet
      * - Wichtig bei Listen mit vielen Einträgen (1000+ Anrufe)
+     * 
+     * Neue Listen werden im Hintergrund mit der alten verglichen
+     * (CallListDiffer) - nur eingefügte, gelöschte und geänderte Zeilen
+     * werden neu gebunden. Stabile IDs = CallLog _ID.
      */
     private class CallAdapter extends RecyclerView.Adapter<CallAdapter.CallViewHolder> {
         
-        private List<CallLogEntry> calls = new ArrayList<>();
+        private final CallListDiffer differ = new CallListDiffer(new AdapterListUpdateCallback(this));
         
         // DateFormatter werden einmal erstellt (Performance)
         private final SimpleDateFormat sdfDate = new SimpleDateFormat("dd.MM.yyyy", Locale.getDefault());
         private final SimpleDateFormat sdfTime = new SimpleDateFormat("HH:mm", Locale.getDefault());
 
+        CallAdapter() {
+            setHasStableIds(true);
+        }
+
         /**
-         * Setzt neue Anrufdaten und aktualisiert die Liste.
-         * notifyDataSetChanged() informiert RecyclerView über Änderung.
+         * Setzt neue Anrufdaten. Die Liste wird nicht kopiert (die Listen von
+         * CallLogHelper sind unveränderlich), die Änderungen kommen asynchron.
          */
         public void setCalls(List<CallLogEntry> calls) {
-            this.calls = calls;
-            notifyDataSetChanged();
+            differ.submitList(calls);
         }
 
         /**
@@ -131,7 +172,7 @@ public class AllCallsFragment extends Fragment {
          */
         @Override
         public void onBindViewHolder(@NonNull CallViewHolder holder, int position) {
-            CallLogEntry call = calls.get(position);
+            CallLogEntry call = differ.getCurrentList().get(position);
             MainActivity activity = (MainActivity) getActivity();
             
             // === Name oder Nummer anzeigen ===
@@ -211,7 +252,12 @@ public class AllCallsFragment extends Fragment {
 
         @Override
         public int getItemCount() {
-            return calls.size();
+            return differ.getCurrentList().size();
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return differ.getCurrentList().get(position).getId();
         }
 
         /**
@@ -25,7 +25,13 @@ public class BlacklistManager {
     private static final String KEY_BLACKLIST = "blacklisted_numbers";
     
     private final SharedPreferences prefs;
-    private final Set<String> blacklistedNumbers;  // Lokale Kopie für schnellen Zugriff
+    // Lokale Kopie für schnellen Zugriff. Wird bei Änderungen komplett ersetzt
+    // (nie verändert), damit der Loader-Thread gefahrlos parallel lesen kann.
+    private volatile Set<String> blacklistedNumbers;
+    // Kompilierte Blacklist, wird nur bei Änderungen neu gebaut
+    private volatile BlacklistMatcher matcher;
+    // Wird bei jeder Änderung erhöht (erst nach dem neuen Matcher gesetzt)
+    private volatile int version = 0;
     
     /**
      * Erstellt einen neuen BlacklistManager.
@@ -37,6 +43,7 @@ public class BlacklistManager {
         prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         // Kopie erstellen um Original-Set nicht zu modifizieren
         blacklistedNumbers = new HashSet<>(prefs.getStringSet(KEY_BLACKLIST, new HashSet<>()));
+        matcher = new BlacklistMatcher(blacklistedNumbers);
     }
     
     /**
@@ -47,7 +54,11 @@ public class BlacklistManager {
      */
     public void addNumber(String number) {
         String normalized = normalizeNumber(number);
-        blacklistedNumbers.add(normalized);
+        Set<String> updated = new HashSet<>(blacklistedNumbers);
+        updated.add(normalized);
+        blacklistedNumbers = updated;
+        matcher = new BlacklistMatcher(updated);
+        version++;
         saveToPrefs();
     }
     
@@ -58,7 +69,11 @@ public class BlacklistManager {
      */
     public void removeNumber(String number) {
         String normalized = normalizeNumber(number);
-        blacklistedNumbers.remove(normalized);
+        Set<String> updated = new HashSet<>(blacklistedNumbers);
+        updated.remove(normalized);
+        blacklistedNumbers = updated;
+        matcher = new BlacklistMatcher(updated);
+        version++;
         saveToPrefs();
     }
     
@@ -70,19 +85,35 @@ public class BlacklistManager {
      * - 01234567890
      * - 1234567890
      * 
+     * Geprüft wird über den kompilierten BlacklistMatcher - ein Durchlauf
+     * über die Nummer statt String.contains() gegen jeden Eintrag.
+     * 
      * @param number Zu prüfende Telefonnummer
      * @return true wenn die Nummer ausgeblendet werden soll
      */
     public boolean isBlacklisted(String number) {
-        String normalized = normalizeNumber(number);
-        for (String blacklisted : blacklistedNumbers) {
-            // Flexibler Vergleich: Prüft ob eine Nummer die andere enthält
-            // Damit matchen +49123... und 0123... auf dieselbe Nummer
-            if (normalized.contains(blacklisted) || blacklisted.contains(normalized)) {
-                return true;
-            }
-        }
-        return false;
+        return isBlacklistedNormalized(normalizeNumber(number));
+    }
+
+    /**
+     * Wie isBlacklisted(), aber für eine bereits normalisierte Nummer
+     * (z.B. aus NumberDictionary.getNormalized()) - spart die Regex.
+     *
+     * @param normalized Nummer nur mit Ziffern und Plus
+     */
+    public boolean isBlacklistedNormalized(String normalized) {
+        // Flexibler Vergleich: Prüft ob eine Nummer die andere enthält
+        // Damit matchen +49123... und 0123... auf dieselbe Nummer
+        return matcher.matches(normalized);
+    }
+    
+    /**
+     * Versionsnummer der Blacklist. Steigt bei jeder Änderung
+     * (addNumber, removeNumber, clear) - damit können Ergebnisse von
+     * isBlacklisted() gecacht und bei Änderungen verworfen werden.
+     */
+    public int getVersion() {
+        return version;
     }
     
     /**
@@ -98,7 +129,9 @@ public class BlacklistManager {
      * Alle Nummern werden wieder in der Statistik angezeigt.
      */
     public void clear() {
-        blacklistedNumbers.clear();
+        blacklistedNumbers = new HashSet<>();
+        matcher = BlacklistMatcher.EMPTY;
+        version++;
         saveToPrefs();
     }
     
@@ -108,7 +141,7 @@ public class BlacklistManager {
      * 
      * Beispiel: "+49 (123) 456-7890" → "+491234567890"
      */
-    private String normalizeNumber(String number) {
+    public static String normalizeNumber(String number) {
         return number.replaceAll("[^0-9+]", "");
     }
     
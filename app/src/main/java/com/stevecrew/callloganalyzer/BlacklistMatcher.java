@@ -0,0 +1,184 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Kompilierte Form der Blacklist für schnelle Prüfungen.
+ *
+ * Entspricht genau der "contains"-Logik von BlacklistManager:
+ * Eine Nummer passt, wenn sie einen Blacklist-Eintrag enthält ODER in einem
+ * Blacklist-Eintrag enthalten ist. Statt für jede Nummer alle Einträge
+ * zweimal mit String.contains() zu durchsuchen, gibt es zwei Automaten:
+ *
+ * 1. Aho-Corasick über alle Einträge: Ein Durchlauf über die Nummer findet
+ *    jeden enthaltenen Eintrag (Nummer enthält Eintrag).
+ * 2. Suffix-Trie über alle Einträge: Die Nummer ist genau dann Teilstring
+ *    eines Eintrags, wenn sie vom Wurzelknoten aus komplett ablaufbar ist
+ *    (Eintrag enthält Nummer).
+ *
+ * Aufwand pro Prüfung: O(Länge der Nummer), unabhängig von der Anzahl Einträge.
+ *
+ * Normalisierte Nummern bestehen nur aus Ziffern und Plus, daher kommen
+ * beide Automaten mit 11 Zeichen aus.
+ *
+ * Unveränderlich und zwischen Threads teilbar.
+ */
+public class BlacklistMatcher {
+
+    /** Matcher für eine leere Blacklist (passt auf nichts) */
+    public static final BlacklistMatcher EMPTY = new BlacklistMatcher(new ArrayList<>());
+
+    // Ziffern 0-9 und Plus
+    private static final int ALPHABET = 11;
+
+    private final boolean empty;
+
+    // === Aho-Corasick (Nummer enthält Eintrag) ===
+    // Vollständige Übergangstabelle: Knoten → Zeichen → Folgeknoten
+    private final int[][] transitions;
+    // true = an diesem Knoten endet ein Eintrag (direkt oder über Fail-Links)
+    private final boolean[] accepting;
+
+    // === Suffix-Trie (Eintrag enthält Nummer) ===
+    // Knoten → Zeichen → Kindknoten (-1 = keine Kante)
+    private final int[][] suffixTrie;
+
+    /**
+     * @param patterns Normalisierte Blacklist-Einträge
+     */
+    public BlacklistMatcher(Collection<String> patterns) {
+        this.empty = patterns.isEmpty();
+
+        // === Aho-Corasick: Trie aufbauen ===
+        List<int[]> nodes = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        nodes.add(newNode());
+        ends.add(false);
+        for (String pattern : patterns) {
+            int node = 0;
+            boolean valid = true;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = symbolOf(pattern.charAt(i));
+                if (symbol < 0) {
+                    // Kann in einer normalisierten Nummer nie vorkommen
+                    valid = false;
+                    break;
+                }
+                if (nodes.get(node)[symbol] < 0) {
+                    nodes.get(node)[symbol] = nodes.size();
+                    nodes.add(newNode());
+                    ends.add(false);
+                }
+                node = nodes.get(node)[symbol];
+            }
+            if (valid) ends.set(node, true);
+        }
+
+        // === Aho-Corasick: Fail-Links per Breitensuche, Übergänge vervollständigen ===
+        int count = nodes.size();
+        transitions = nodes.toArray(new int[count][]);
+        accepting = new boolean[count];
+        int[] fail = new int[count];
+        for (int i = 0; i < count; i++) accepting[i] = ends.get(i);
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int child = transitions[0][symbol];
+            if (child < 0) {
+                transitions[0][symbol] = 0;
+            } else {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            accepting[node] |= accepting[fail[node]];
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int child = transitions[node][symbol];
+                if (child < 0) {
+                    transitions[node][symbol] = transitions[fail[node]][symbol];
+                } else {
+                    fail[child] = transitions[fail[node]][symbol];
+                    queue.add(child);
+                }
+            }
+        }
+
+        // === Suffix-Trie: alle Suffixe aller Einträge einfügen ===
+        List<int[]> trie = new ArrayList<>();
+        trie.add(newNode());
+        for (String pattern : patterns) {
+            for (int start = 0; start < pattern.length(); start++) {
+                int node = 0;
+                for (int i = start; i < pattern.length(); i++) {
+                    int symbol = symbolOf(pattern.charAt(i));
+                    // Fremdes Zeichen: weiter geht es in keiner Nummer
+                    if (symbol < 0) break;
+                    if (trie.get(node)[symbol] < 0) {
+                        trie.get(node)[symbol] = trie.size();
+                        trie.add(newNode());
+                    }
+                    node = trie.get(node)[symbol];
+                }
+            }
+        }
+        suffixTrie = trie.toArray(new int[trie.size()][]);
+    }
+
+    /**
+     * Prüft eine normalisierte Nummer gegen die Blacklist.
+     *
+     * @param normalized Nummer nur mit Ziffern und Plus
+     * @return true wenn die Nummer einen Eintrag enthält oder in einem enthalten ist
+     */
+    public boolean matches(String normalized) {
+        if (empty) return false;
+        return containsPattern(normalized) || isInsidePattern(normalized);
+    }
+
+    /** Nummer enthält einen Eintrag (Aho-Corasick) */
+    private boolean containsPattern(String number) {
+        int state = 0;
+        if (accepting[state]) return true;  // Leerer Eintrag passt immer
+        for (int i = 0; i < number.length(); i++) {
+            int symbol = symbolOf(number.charAt(i));
+            if (symbol < 0) {
+                state = 0;
+                continue;
+            }
+            state = transitions[state][symbol];
+            if (accepting[state]) return true;
+        }
+        return false;
+    }
+
+    /** Nummer ist Teilstring eines Eintrags (Suffix-Trie) */
+    private boolean isInsidePattern(String number) {
+        int node = 0;
+        for (int i = 0; i < number.length(); i++) {
+            int symbol = symbolOf(number.charAt(i));
+            if (symbol < 0) return false;
+            node = suffixTrie[node][symbol];
+            if (node < 0) return false;
+        }
+        return true;
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    /** Zeichen → Index im Alphabet, -1 wenn weder Ziffer noch Plus */
+    private static int symbolOf(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c == '+') return 10;
+        return -1;
+    }
+}
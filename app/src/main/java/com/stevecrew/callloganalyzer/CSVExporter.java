@@ -30,6 +30,18 @@ import java.util.Locale;
  */
 public class CSVExporter {
 
+    /**
+     * Exportiert die Anrufe im aktuellen Zeitraum, auf die eine Abfrage
+     * zutrifft (dieselbe CallQuery wie für Anrufliste und Statistik).
+     * 
+     * @param helper Quelle der Anrufe (Zeitraum und Blacklist werden angewendet)
+     * @param query Filter, CallQuery.ALL = alle Anrufe des Zeitraums
+     * @return Pfad zur erstellten Datei, oder null bei Fehler
+     */
+    public static String exportToCSV(Context context, CallLogHelper helper, CallQuery query) {
+        return exportToCSV(context, helper.getCalls(query));
+    }
+
     /**
      * Exportiert die Anrufliste als CSV-Datei.
      * 
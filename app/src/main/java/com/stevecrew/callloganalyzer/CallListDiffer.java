@@ -0,0 +1,161 @@
+package com.stevecrew.callloganalyzer;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Berechnet Änderungen zwischen zwei Anruflisten im Hintergrund und meldet
+ * sie als minimale Einfüge-/Lösch-/Änderungs-Ereignisse (wie AsyncListDiffer).
+ *
+ * Statt DiffUtil (Myers, O((N + M) · D)) wird ausgenutzt, dass beide Listen
+ * nach Datum absteigend sortiert sind: Ein gemeinsamer Durchlauf wie beim
+ * Mischen findet Einfügungen und Löschungen in O(N + M). Beim Wechsel von
+ * "Alle" auf "7 Tage" mit 20.000 Anrufen wären das sonst ~10^8 Schritte.
+ * Identität eines Eintrags ist die CallLog _ID (getId()).
+ *
+ * Auch wenn die Sortierung einmal nicht stimmt (z.B. gleiche Zeitpunkte in
+ * anderer Reihenfolge), überführen die Ereignisse die alte Liste immer
+ * korrekt in die neue - nur eben nicht mehr minimal.
+ *
+ * Listen werden nicht kopiert und müssen unveränderlich sein (die Listen
+ * von CallLogHelper sind das).
+ */
+public class CallListDiffer {
+
+    // Ein Thread für alle Instanzen - Diffs sind kurz und selten
+    private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "CallListDiffer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // === Arten von Ereignissen ===
+    private static final int OP_INSERT = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_CHANGE = 2;
+
+    private final ListUpdateCallback updateCallback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private List<CallLogEntry> current = Collections.emptyList();
+    private int generation = 0;  // Verwirft Ergebnisse überholter Diffs
+
+    public CallListDiffer(ListUpdateCallback updateCallback) {
+        this.updateCallback = updateCallback;
+    }
+
+    /** Die aktuell angezeigte Liste */
+    public List<CallLogEntry> getCurrentList() {
+        return current;
+    }
+
+    /**
+     * Setzt eine neue Liste. Die Ereignisse (und der Wechsel von
+     * getCurrentList()) kommen asynchron auf dem Main-Thread. Muss vom
+     * Main-Thread aufgerufen werden.
+     */
+    public void submitList(List<CallLogEntry> calls) {
+        int gen = ++generation;
+        if (calls == current) return;
+
+        // Leere Seite → kein Diff nötig
+        List<CallLogEntry> old = current;
+        if (old.isEmpty() || calls.isEmpty()) {
+            current = calls;
+            if (!old.isEmpty()) updateCallback.onRemoved(0, old.size());
+            if (!calls.isEmpty()) updateCallback.onInserted(0, calls.size());
+            return;
+        }
+
+        DIFF_EXECUTOR.execute(() -> {
+            int[] ops = calculateDiff(old, calls);
+            mainHandler.post(() -> {
+                if (gen != generation) return;  // Inzwischen neue Liste gesetzt
+                current = calls;
+                dispatch(ops);
+            });
+        });
+    }
+
+    /**
+     * Änderungen von oldCalls nach newCalls als Ereignisse, je drei Werte
+     * (Art, Position, Anzahl). Positionen beziehen sich auf die Liste nach
+     * allen vorherigen Ereignissen - also genau die Reihenfolge, in der
+     * RecyclerView sie erwartet.
+     */
+    static int[] calculateDiff(List<CallLogEntry> oldCalls, List<CallLogEntry> newCalls) {
+        int[] ops = new int[48];
+        int count = 0;
+        int i = 0, j = 0;
+        int position = 0;  // Position in der teilweise umgebauten Liste
+        CallLogEntry a = oldCalls.get(0);
+        CallLogEntry b = newCalls.get(0);
+
+        while (a != null || b != null) {
+            int op;
+            if (b == null) {
+                op = OP_REMOVE;
+            } else if (a == null) {
+                op = OP_INSERT;
+            } else if (a.getId() == b.getId()) {
+                op = sameContents(a, b) ? -1 : OP_CHANGE;
+            } else {
+                // Neuerer Anruf zuerst; bei gleichem Zeitpunkt löschen (bleibt korrekt)
+                op = a.getTimestamp() >= b.getTimestamp() ? OP_REMOVE : OP_INSERT;
+            }
+
+            if (op >= 0) {
+                // An das vorherige Ereignis anhängen wenn es direkt anschließt
+                int last = count - 3;
+                if (last >= 0 && ops[last] == op
+                        && ops[last + 1] + (op == OP_REMOVE ? 0 : ops[last + 2]) == position) {
+                    ops[last + 2]++;
+                } else {
+                    if (count == ops.length) ops = Arrays.copyOf(ops, count * 2);
+                    ops[count] = op;
+                    ops[count + 1] = position;
+                    ops[count + 2] = 1;
+                    count += 3;
+                }
+            }
+
+            if (op != OP_REMOVE) {
+                // Neuer Eintrag steht jetzt an position
+                position++;
+                b = ++j < newCalls.size() ? newCalls.get(j) : null;
+            }
+            if (op != OP_INSERT) {
+                a = ++i < oldCalls.size() ? oldCalls.get(i) : null;
+            }
+        }
+        return Arrays.copyOf(ops, count);
+    }
+
+    /** true wenn sich an der Anzeige eines Eintrags nichts geändert hat */
+    private static boolean sameContents(CallLogEntry a, CallLogEntry b) {
+        return a.getType() == b.getType()
+                && a.getDuration() == b.getDuration()
+                && a.getTimestamp() == b.getTimestamp()
+                && Objects.equals(a.getNumber(), b.getNumber())
+                && Objects.equals(a.getContactName(), b.getContactName());
+    }
+
+    private void dispatch(int[] ops) {
+        for (int k = 0; k < ops.length; k += 3) {
+            switch (ops[k]) {
+                case OP_INSERT: updateCallback.onInserted(ops[k + 1], ops[k + 2]); break;
+                case OP_REMOVE: updateCallback.onRemoved(ops[k + 1], ops[k + 2]); break;
+                case OP_CHANGE: updateCallback.onChanged(ops[k + 1], ops[k + 2], null); break;
+            }
+        }
+    }
+}
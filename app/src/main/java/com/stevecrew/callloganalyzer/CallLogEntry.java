@@ -24,6 +24,7 @@ public class CallLogEntry {
     public static final int TYPE_REJECTED = 5;  // Abgelehnter Anruf
 
     // === Anruf-Daten ===
+    private long id;             // CallLog.Calls._ID (-1 wenn unbekannt)
     private String number;       // Telefonnummer (kann verschiedene Formate haben)
     private String contactName;  // Name aus Kontakten (leer wenn unbekannt)
     private int type;            // Einer der TYPE_* Konstanten
@@ -40,6 +41,21 @@ public class CallLogEntry {
      * @param timestamp Zeitpunkt des Anrufs (Unix-Timestamp in ms)
      */
     public CallLogEntry(String number, String contactName, int type, long duration, long timestamp) {
+        this(-1, number, contactName, type, duration, timestamp);
+    }
+
+    /**
+     * Erstellt einen neuen Anruf-Eintrag mit Datenbank-ID.
+     * 
+     * @param id Zeilen-ID aus CallLog.Calls._ID
+     * @param number Telefonnummer
+     * @param contactName Name aus Kontakten (kann null sein)
+     * @param type Anruftyp (TYPE_INCOMING, TYPE_OUTGOING, etc.)
+     * @param duration Anrufdauer in Sekunden
+     * @param timestamp Zeitpunkt des Anrufs (Unix-Timestamp in ms)
+     */
+    public CallLogEntry(long id, String number, String contactName, int type, long duration, long timestamp) {
+        this.id = id;
         this.number = number;
         this.contactName = contactName != null ? contactName : "";
         this.type = type;
@@ -48,6 +64,7 @@ public class CallLogEntry {
     }
 
     // === Getter-Methoden ===
+    public long getId() { return id; }
     public String getNumber() { return number; }
     public String getContactName() { return contactName; }
     public int getType() { return type; }
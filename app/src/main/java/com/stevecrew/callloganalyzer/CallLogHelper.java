@@ -2,16 +2,19 @@ package com.stevecrew.callloganalyzer;
 
 import android.content.Context;
 import android.database.ContentObserver;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.CallLog;
+import android.util.Log;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Zentrale Klasse für den Zugriff auf das Android Anrufprotokoll.
@@ -22,23 +25,41 @@ import java.util.Map;
  * - Filtert ausgeblendete Nummern (Blacklist)
  * - Berechnet Statistiken (Top Caller, längste Gespräche)
  * - Beobachtet Änderungen für Live-Updates (ContentObserver)
+ * - Lädt bei Änderungen nur neue Zeilen nach (Watermark auf _ID/DATE)
+ * - Lädt im Hintergrund (Loader-Thread), entprellt schnelle Änderungsfolgen
+ * - Hält die Daten spaltenweise im CallLogStore (primitive Arrays statt Objekt-Liste)
+ * - Zeigt beim Kaltstart sofort den letzten Stand (CallLogSnapshot) und lädt dann frisch
+ * - Ohne Snapshot werden die neuesten Anrufe schon während des Ladens angezeigt
  * 
  * Verwendung:
  * 1. CallLogHelper erstellen mit Context
- * 2. loadCallLog() aufrufen nach Permission-Grant
- * 3. startObserving() für Live-Updates
- * 4. stopObserving() in onDestroy() nicht vergessen!
+ * 2. setOnCallLogChangedListener() setzen (wird nach jedem Laden aufgerufen)
+ * 3. loadCallLog() aufrufen nach Permission-Grant
+ * 4. startObserving() für Live-Updates
+ * 5. shutdown() in onDestroy() nicht vergessen!
  */
 public class CallLogHelper {
     
+    private static final String TAG = "CallLogHelper";
+    
     /**
      * Callback-Interface für Änderungen im Anrufprotokoll.
      * Wird aufgerufen wenn ein neuer Anruf hinzukommt oder sich das Log ändert.
+     * Aufruf erfolgt immer auf dem Main-Thread, nachdem ein Ladevorgang fertig ist
+     * oder eine Blacklist-/Regel-Änderung angewendet wurde.
      */
     public interface OnCallLogChangedListener {
         void onCallLogChanged();
     }
     
+    /**
+     * Callback für searchCalls(). Aufruf immer auf dem Main-Thread und nur
+     * für die zuletzt gestellte Anfrage.
+     */
+    public interface OnSearchResultListener {
+        void onSearchResult(String query, List<CallLogEntry> calls);
+    }
+    
     // === Zeitraum-Konstanten für Filter ===
     public static final int PERIOD_ALL = 0;       // Alle Anrufe
     public static final int PERIOD_7_DAYS = 1;    // Letzte 7 Tage
@@ -46,26 +67,86 @@ public class CallLogHelper {
     public static final int PERIOD_3_MONTHS = 3;  // Letzte 3 Monate
     public static final int PERIOD_6_MONTHS = 4;  // Letzte 6 Monate
     public static final int PERIOD_1_YEAR = 5;    // Letztes Jahr
+    public static final int PERIOD_CUSTOM = 6;    // Eigener Datumsbereich (setDateRange)
     
     /**
-     * Nummern die IMMER als ausgehend gezählt werden sollen.
-     * 
-     * Hintergrund: Manche Nummern (z.B. Festnetz-Durchwahl) werden vom
-     * System manchmal falsch als "eingehend" markiert wenn man selbst
-     * von dieser Nummer anruft. Hier können solche Nummern korrigiert werden.
+     * Wartezeit in ms, in der weitere Observer-Benachrichtigungen zu
+     * einem einzigen Ladevorgang zusammengefasst werden.
+     */
+    private static final long LOAD_DEBOUNCE_MS = 300;
+    
+    /** Wartezeit in ms nach dem letzten Tastendruck, bevor gesucht wird */
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+    
+    /**
+     * Mindestabstand in ms zwischen zwei Snapshot-Schreibvorgängen nach
+     * inkrementellem Laden. Ein neuer Anruf soll nicht jedes Mal den
+     * kompletten Snapshot neu schreiben.
      */
-    private static final String[] ALWAYS_OUTGOING = {
-        "+49355691034",
-        "49355691034",
-        "0355691034"
-    };
+    private static final long SNAPSHOT_WRITE_INTERVAL_MS = 60_000;
     
-    // === Kern-Daten ===
+    // === Kern-Daten (nur Main-Thread) ===
+    // Werden nie verändert, sondern beim Laden/Filtern komplett ersetzt
     private final Context context;
-    private final List<CallLogEntry> allCalls;       // Alle geladenen Anrufe (ungefiltert)
-    private final List<CallLogEntry> filteredCalls;  // Gefilterte Anrufe (nach Zeit & Blacklist)
+    private CallLogStore store;                      // Alle geladenen Anrufe (ungefiltert, spaltenweise)
+    private StoreIndex index;                        // Ausgeblendete Zeilen und Tages-Summen für store
+    private int visibleStart = 0;                    // Zeilen [visibleStart, visibleEnd) liegen im Zeitraum
+    private int visibleEnd = 0;
+    private StatsSnapshot stats;                     // Statistik für store/visible*/index (null = neu berechnen)
+    private HeatmapCube heatmap;                     // Wochentag × Stunde für store/visible*/index (null = neu berechnen)
+    private CallQuery callQuery = CallQuery.ALL;     // Zusätzlicher Filter (setQuery)
+    private int[] selection;                         // Zeilen für callQuery in visible* (null = neu berechnen)
     private int currentPeriod = PERIOD_ALL;          // Aktuell ausgewählter Zeitraum
+    private long customFrom = 0;                     // Datumsbereich für PERIOD_CUSTOM (inklusiv)
+    private long customTo = Long.MAX_VALUE;          // (exklusiv)
+    private int filterGeneration = 0;                // Wird bei jeder Blacklist-/Regel-Änderung erhöht
+    private CallLogQueryPlan loadedPlan = null;      // Welcher Ausschnitt in store steckt (null = nichts)
     private BlacklistManager blacklistManager;
+    // Blacklist-Urteil pro normalisierter Nummer, gültig für verdictSource/verdictVersion.
+    // Wird von Loader- und Main-Thread benutzt, daher nur in getBlacklistedIds() (synchronized)
+    private final Map<String, Boolean> verdictCache = new HashMap<>();
+    private BlacklistManager verdictSource;
+    private int verdictVersion;
+    // Regeln für erzwungene Anruftypen (z.B. Festnetz-Durchwahl immer ausgehend)
+    private TypeOverrideManager typeOverrideManager;
+    // Erzwungener Typ pro normalisierter Nummer (-1 = keiner), gültig für forcedSource/forcedVersion.
+    // Nur in getForcedTypes() (synchronized) benutzen
+    private final Map<String, Integer> forcedTypeCache = new HashMap<>();
+    private TypeOverrideManager forcedSource;
+    private int forcedVersion;
+    
+    // === Hintergrund-Laden ===
+    // Liest die Datenbank (nur auf dem Loader-Thread benutzen!)
+    private final CallLogLoader loader;
+    // Letzter Stand auf Disk für schnellen Kaltstart (nur Loader-Thread)
+    private final CallLogSnapshot snapshot;
+    private CallLogStore unsavedStore;         // Noch nicht gespeicherter Stand (nur Loader-Thread)
+    private PeriodStatsTable unsavedPeriods;   // Statistik dazu und deren Filter-Schlüssel (ebenso)
+    private int unsavedFilterKey;
+    private long snapshotWrittenAt = 0;        // elapsedRealtime() des letzten Speicherns (nur Loader-Thread)
+    // Letztes Ladeergebnis samt Index - Basis zum Fortschreiben bei neuen Anrufen (nur Loader-Thread)
+    private CallLogStore indexedStore;
+    private StoreIndex indexedIndex;
+    private int indexedGeneration;
+    // Eigener Thread für Datenbank-Zugriffe, damit die UI nicht ruckelt
+    private final ExecutorService loaderExecutor = Executors.newSingleThreadExecutor(
+        r -> new Thread(r, "CallLogLoader"));
+    // Ausgelöst nach LOAD_DEBOUNCE_MS ohne weitere Änderung
+    private final Runnable debouncedLoad = this::dispatchLoad;
+    // Eigener Thread für Suchanfragen - wartet nicht hinter einem langen Ladevorgang
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(
+        r -> new Thread(r, "CallLogSearch"));
+    private Runnable debouncedSearch;          // Wartende Suchanfrage (nur Main-Thread)
+    private int searchGeneration = 0;          // Nur Ergebnisse der neuesten Anfrage zustellen
+    // Lade-Zustand (nur Main-Thread)
+    private boolean loadRunning = false;       // Ladevorgang läuft gerade
+    private boolean loadQueued = false;        // Danach noch einmal laden
+    private boolean fullReloadPending = false; // Nächster Ladevorgang lädt alles
+    private Uri pendingUri;                    // Letzte URI aus onChange()
+    private int pendingUriCount = 0;           // Anzahl zusammengefasster Änderungen
+    private boolean shutdown = false;
+    private boolean snapshotPending = true;    // Snapshot beim ersten Laden noch anzeigen
+    private boolean provisional = false;       // Angezeigte Daten sind Snapshot/Zwischenstand
     
     // === Live-Update Komponenten ===
     // Observer der auf Änderungen im CallLog reagiert (z.B. neuer Anruf)
@@ -82,9 +163,12 @@ public class CallLogHelper {
      */
     public CallLogHelper(Context context) {
         this.context = context;
-        this.allCalls = new ArrayList<>();
-        this.filteredCalls = new ArrayList<>();
+        this.store = CallLogStore.EMPTY;
+        this.index = StoreIndex.NONE;
+        this.loader = new CallLogLoader(context);
+        this.snapshot = new CallLogSnapshot(context);
         this.blacklistManager = new BlacklistManager(context);
+        this.typeOverrideManager = new TypeOverrideManager(context);
     }
     
     /**
@@ -102,7 +186,7 @@ public class CallLogHelper {
      * 
      * Registriert einen ContentObserver auf CallLog.Calls.CONTENT_URI.
      * Ab jetzt wird bei jedem neuen Anruf (eingehend/ausgehend/verpasst)
-     * automatisch onChange() aufgerufen → Daten neu laden → UI updaten.
+     * automatisch onChange() aufgerufen → Daten im Hintergrund nachladen → UI updaten.
      * 
      * Aufruf: Nach Permission-Grant in MainActivity.loadData()
      */
@@ -137,8 +221,9 @@ public class CallLogHelper {
      * Funktionsweise:
      * 1. Android erkennt Änderung im CallLog (neuer Anruf beendet)
      * 2. ContentResolver benachrichtigt alle registrierten Observer
-     * 3. onChange() wird aufgerufen
-     * 4. Wir laden die Daten neu und informieren die UI
+     * 3. onChange() wird aufgerufen (Main-Thread, daher nur vormerken)
+     * 4. Der Loader-Thread lädt die neuen Zeilen nach, danach wird die UI
+     *    informiert (Vollladen nur bei Löschungen oder Edits, siehe CallLogLoader)
      */
     private class CallLogObserver extends ContentObserver {
         public CallLogObserver(Handler handler) {
@@ -153,13 +238,9 @@ public class CallLogHelper {
         
         @Override
         public void onChange(boolean selfChange, Uri uri) {
-            // Anrufliste neu aus der Datenbank laden
-            loadCallLog();
-            
-            // UI auf dem Main-Thread aktualisieren (wichtig für Android!)
-            if (changeListener != null) {
-                mainHandler.post(() -> changeListener.onCallLogChanged());
-            }
+            // Nur vormerken - geladen wird entprellt im Hintergrund.
+            // Der Listener wird erst benachrichtigt wenn das Laden fertig ist.
+            loadNewCalls(uri);
         }
     }
     
@@ -173,63 +254,358 @@ public class CallLogHelper {
     public BlacklistManager getBlacklistManager() {
         return blacklistManager;
     }
+    
+    /**
+     * Setzt den TypeOverrideManager (für Dependency Injection).
+     */
+    public void setTypeOverrideManager(TypeOverrideManager manager) {
+        this.typeOverrideManager = manager;
+    }
+    
+    public TypeOverrideManager getTypeOverrideManager() {
+        return typeOverrideManager;
+    }
 
     /**
-     * Lädt alle Anrufe aus der Android CallLog-Datenbank.
+     * Lädt die Anrufe für den aktuellen Zeitraum aus der Android CallLog-Datenbank (asynchron).
      * 
-     * Verwendet ContentResolver um auf CallLog.Calls zuzugreifen.
-     * Benötigt READ_CALL_LOG Permission!
+     * Query-Planung: Bei kurzen Zeiträumen (z.B. 7 Tage) wird nur dieser
+     * Ausschnitt per WHERE DATE >= ? geladen. Die komplette Tabelle wird nur
+     * gelesen wenn PERIOD_ALL gewählt ist. Wird später ein längerer Zeitraum
+     * gewählt, lädt setTimePeriod() automatisch nach.
+     * 
+     * Das eigentliche Laden (ContentResolver-Query, Cursor durchlaufen,
+     * Filter anwenden) läuft auf dem Loader-Thread. Sobald der Ladevorgang
+     * fertig ist, werden die Daten auf dem Main-Thread übernommen und der
+     * OnCallLogChangedListener benachrichtigt.
      * 
-     * Nach dem Laden wird automatisch applyFilter() aufgerufen
-     * um Zeitraum- und Blacklist-Filter anzuwenden.
+     * Beim allerersten Aufruf wird vorher der Snapshot vom letzten App-Start
+     * angezeigt (Listener wird dafür zusätzlich benachrichtigt). Passen
+     * Blacklist und Regeln noch, kommt die Statistik direkt aus dem Snapshot
+     * und der restliche Index wird erst für die frisch geladenen Daten gebaut. Die Wartezeit bis zur
+     * ersten Anzeige hängt so nicht von der Größe des Anrufprotokolls ab.
+     * Gibt es keinen Snapshot, werden stattdessen die neuesten Anrufe
+     * seitenweise gemeldet, während der Cursor noch liest.
+     * Solange gilt isProvisional() == true.
+     * 
+     * Benötigt READ_CALL_LOG Permission!
      */
     public void loadCallLog() {
-        allCalls.clear();
+        fullReloadPending = true;
+        // Initiales Laden nicht verzögern
+        mainHandler.removeCallbacks(debouncedLoad);
+        dispatchLoad();
+    }
+    
+    /**
+     * Fordert das Nachladen neuer Anrufe an (asynchron, entprellt).
+     * 
+     * Mehrere Benachrichtigungen kurz hintereinander (z.B. Anruf → Voicemail
+     * → Kontaktname aufgelöst) werden zu einem einzigen Ladevorgang
+     * zusammengefasst. Siehe CallLogLoader.loadNew() für die Watermark-Logik.
+     * 
+     * @param uri URI aus ContentObserver.onChange() (kann null sein)
+     */
+    public void loadNewCalls(Uri uri) {
+        pendingUri = uri;
+        pendingUriCount++;
+        mainHandler.removeCallbacks(debouncedLoad);
+        mainHandler.postDelayed(debouncedLoad, LOAD_DEBOUNCE_MS);
+    }
+    
+    /**
+     * Startet einen Ladevorgang auf dem Loader-Thread.
+     * 
+     * Läuft bereits einer, wird nur vorgemerkt dass danach noch einmal
+     * geladen werden muss. So läuft immer höchstens ein Ladevorgang und
+     * höchstens einer wartet.
+     */
+    private void dispatchLoad() {
+        if (shutdown) return;
+        if (loadRunning) {
+            loadQueued = true;
+            return;
+        }
         
-        // Welche Spalten wollen wir laden?
-        String[] projection = {
-            CallLog.Calls.NUMBER,       // Telefonnummer
-            CallLog.Calls.CACHED_NAME,  // Kontaktname (cached vom System)
-            CallLog.Calls.TYPE,         // Anruftyp (1=incoming, 2=outgoing, 3=missed, 5=rejected)
-            CallLog.Calls.DURATION,     // Dauer in Sekunden
-            CallLog.Calls.DATE          // Timestamp in Millisekunden
-        };
-
-        // Query ausführen, sortiert nach Datum (neueste zuerst)
-        Cursor cursor = context.getContentResolver().query(
-            CallLog.Calls.CONTENT_URI,
-            projection,
-            null,    // selection (WHERE) - null = alle
-            null,    // selectionArgs
-            CallLog.Calls.DATE + " DESC"  // Sortierung
-        );
-
-        // Cursor durchlaufen und CallLogEntry-Objekte erstellen
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                String number = cursor.getString(cursor.getColumnIndexOrThrow(CallLog.Calls.NUMBER));
-                String name = cursor.getString(cursor.getColumnIndexOrThrow(CallLog.Calls.CACHED_NAME));
-                int type = cursor.getInt(cursor.getColumnIndexOrThrow(CallLog.Calls.TYPE));
-                long duration = cursor.getLong(cursor.getColumnIndexOrThrow(CallLog.Calls.DURATION));
-                long date = cursor.getLong(cursor.getColumnIndexOrThrow(CallLog.Calls.DATE));
-
-                allCalls.add(new CallLogEntry(number, name, type, duration, date));
+        // Angesammelte Anfragen übernehmen
+        final boolean full = fullReloadPending;
+        // Bei mehreren zusammengefassten Änderungen ist die einzelne URI nicht aussagekräftig
+        final Uri uri = pendingUriCount == 1 ? pendingUri : null;
+        fullReloadPending = false;
+        pendingUri = null;
+        pendingUriCount = 0;
+        
+        // Blacklist-Stand merken, um veraltete Masken beim Übernehmen zu erkennen
+        final int generation = filterGeneration;
+        // Nur den Ausschnitt laden, den der aktuelle Zeitraum braucht
+        final CallLogQueryPlan plan = full ? CallLogQueryPlan.since(getRangeFrom()) : null;
+        // Kaltstart: erst den gespeicherten Stand zeigen, dann frisch laden
+        final boolean restoreSnapshot = full && snapshotPending;
+        snapshotPending = false;
+        
+        loadRunning = true;
+        loaderExecutor.execute(() -> {
+            CallLogLoader.OnPageLoadedListener pageListener = null;
+            // Blacklist/Regeln, mit denen der Index dieses Ladevorgangs berechnet wird
+            final int loadFilterKey = filterKey();
+            if (restoreSnapshot) {
+                CallLogSnapshot.Contents restored = snapshot.read();
+                if (restored != null) {
+                    CallLogStore cached = withTypeOverrides(restored.store);
+                    // Gespeicherte Statistik passt → Übersicht sofort zeichnen und gleich
+                    // frisch laden. Tages-Summen, Posting-Listen und Such-Index werden
+                    // erst für die frischen Daten gebaut, nicht für den Snapshot
+                    StoreIndex cachedIndex = restored.filterKey == loadFilterKey
+                            ? computeQuickIndex(cached, restored.periods)
+                            : computeIndex(cached);
+                    mainHandler.post(() -> onProvisionalData(cached, cachedIndex, generation));
+                } else {
+                    // Kein Snapshot: neueste Anrufe schon während des Ladens zeigen
+                    pageListener = page -> {
+                        CallLogStore partial = withTypeOverrides(page);
+                        StoreIndex partialIndex = computeIndex(partial);
+                        mainHandler.post(() -> onProvisionalData(partial, partialIndex, generation));
+                    };
+                }
+            }
+            
+            CallLogStore calls = null;
+            StoreIndex callsIndex = null;
+            int inserted = -1;
+            try {
+                calls = full ? loader.load(plan, pageListener) : loader.loadNew(uri);
+                if (calls != null) {
+                    inserted = loader.getLastInsertedCount();
+                    // Nur neue Anrufe vorne, Blacklist und Regeln gleich → Index fortschreiben
+                    if (inserted > 0 && indexedStore != null && generation == indexedGeneration
+                            && calls.size() == indexedStore.size() + inserted) {
+                        calls = withTypeOverrides(calls, indexedStore, inserted);
+                        callsIndex = computeIndex(calls, indexedIndex, inserted);
+                    } else {
+                        calls = withTypeOverrides(calls);
+                        callsIndex = computeIndex(calls);
+                    }
+                    indexedStore = calls;
+                    indexedIndex = callsIndex;
+                    indexedGeneration = generation;
+                }
+            } catch (RuntimeException e) {
+                // z.B. SecurityException wenn die Permission entzogen wurde
+                Log.w(TAG, "Anrufprotokoll konnte nicht geladen werden", e);
+                calls = null;  // Ohne Index nichts übernehmen
+                indexedStore = null;
+                if (e instanceof SecurityException) {
+                    unsavedStore = null;
+                    snapshot.delete();  // Ohne Permission keine Anrufdaten auf Disk behalten
+                }
             }
-            cursor.close();  // Cursor immer schließen!
+            final CallLogStore loaded = calls;
+            final StoreIndex loadedIndex = callsIndex;
+            final int insertedCount = inserted;
+            mainHandler.post(() -> onLoadFinished(loaded, loadedIndex, insertedCount, plan, generation));
+            
+            // Nach dem Veröffentlichen speichern, damit die UI nicht darauf wartet.
+            // Vollladen sofort, neue Anrufe höchstens alle SNAPSHOT_WRITE_INTERVAL_MS
+            // (der Rest spätestens beim nächsten Laden oder in shutdown())
+            if (loaded != null) {
+                unsavedStore = loaded;
+                unsavedPeriods = loadedIndex.periods;
+                unsavedFilterKey = loadFilterKey;
+                if (full || SystemClock.elapsedRealtime() - snapshotWrittenAt >= SNAPSHOT_WRITE_INTERVAL_MS) {
+                    writeSnapshot();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Speichert den noch nicht gespeicherten Stand (nur Loader-Thread).
+     */
+    private void writeSnapshot() {
+        if (unsavedStore == null) return;
+        snapshot.write(unsavedStore, unsavedPeriods, unsavedFilterKey);
+        unsavedStore = null;
+        snapshotWrittenAt = SystemClock.elapsedRealtime();
+    }
+    
+    /**
+     * Zeigt vorläufige Daten an (Main-Thread): den Snapshot vom letzten
+     * App-Start oder einen Zwischenstand des laufenden Ladevorgangs.
+     * 
+     * loadedPlan bleibt unverändert, der laufende Ladevorgang ersetzt die
+     * Daten gleich durch den vollständigen Stand.
+     */
+    private void onProvisionalData(CallLogStore calls, StoreIndex callsIndex, int generation) {
+        // Vollständige Daten schon da? Dann keinen Zwischenstand mehr anzeigen
+        if (shutdown || loadedPlan != null) return;
+        
+        provisional = true;
+        swapStore(calls, callsIndex, -1, generation);
+        
+        if (changeListener != null) {
+            changeListener.onCallLogChanged();
+        }
+    }
+    
+    /**
+     * Übernimmt das Ergebnis eines Ladevorgangs (Main-Thread).
+     * 
+     * @param calls Neuer Store, oder null wenn sich nichts geändert hat
+     * @param callsIndex Auf dem Loader-Thread berechneter Index (Blacklist, Tages-Summen)
+     * @param inserted Anzahl neuer Zeilen vorne im Store, -1 bei komplettem Neuladen
+     * @param plan Geladener Ausschnitt, oder null bei inkrementellem Nachladen
+     * @param generation Blacklist-Stand zum Zeitpunkt des Ladestarts
+     */
+    private void onLoadFinished(CallLogStore calls, StoreIndex callsIndex, int inserted,
+                                CallLogQueryPlan plan, int generation) {
+        loadRunning = false;
+        if (shutdown) return;
+        
+        if (calls != null) {
+            provisional = false;
+            if (plan != null) loadedPlan = plan;
+            swapStore(calls, callsIndex, inserted, generation);
+            
+            if (changeListener != null) {
+                changeListener.onCallLogChanged();
+            }
+            
+            // Zeitraum während des Ladens verlängert? Dann fehlenden Ausschnitt nachladen
+            if (!loadedPlan.covers(CallLogQueryPlan.since(getRangeFrom()))) {
+                fullReloadPending = true;
+                loadQueued = true;
+            }
+        }
+        
+        // Während des Ladens kam eine weitere Änderung → noch einmal laden
+        if (loadQueued) {
+            loadQueued = false;
+            dispatchLoad();
+        }
+    }
+    
+    /**
+     * Übernimmt einen neuen Store samt Index (Main-Thread).
+     * 
+     * Der Zeitraum wird erst hier per binärer Suche angewendet, da er sich
+     * während des Ladens geändert haben kann. Wurden Blacklist oder Regeln
+     * während des Ladens geändert, werden Typen und Index danach auf dem
+     * Loader-Thread neu berechnet (dispatchReindex()).
+     * 
+     * Kamen nur neue Anrufe vorne dazu, ist der Index schon auf dem
+     * Loader-Thread fortgeschrieben (feste Zeiträume per
+     * PeriodStatsTable.withInsertedRows). Für einen eigenen Bereich bis jetzt
+     * wird die Statistik hier fortgeschrieben, ebenso die Heatmap
+     * (StatsSnapshot/HeatmapCube.withInsertedRows). Bei Löschungen, Edits
+     * oder Blacklist-/Regel-Änderungen wird sie beim nächsten Zugriff neu
+     * berechnet.
+     * 
+     * @param inserted Anzahl neuer Zeilen vorne in calls, -1 = unbekannt
+     */
+    private void swapStore(CallLogStore calls, StoreIndex callsIndex, int inserted, int generation) {
+        boolean stale = generation != filterGeneration;
+        boolean delta = inserted > 0 && !stale;
+        StatsSnapshot previous = stats;
+        HeatmapCube previousHeatmap = heatmap;
+        int previousEnd = visibleEnd;
+        
+        store = calls;
+        index = callsIndex;
+        visibleStart = calls.countSince(getRangeTo());
+        visibleEnd = calls.countSince(getRangeFrom());
+        
+        // Fortschreiben nur wenn alle neuen Zeilen im Zeitraum liegen und
+        // keine alte Zeile herausgefallen ist
+        // (mit aktiver Abfrage wird neu berechnet)
+        boolean append = delta && callQuery.isAll()
+                && visibleStart == 0 && visibleEnd == previousEnd + inserted;
+        selection = null;
+        StatsSnapshot precomputed = callQuery.isAll()
+                ? callsIndex.periods.get(visibleStart, visibleEnd) : null;
+        if (precomputed != null) {
+            stats = precomputed;
+        } else {
+            stats = append && previous != null
+                    ? previous.withInsertedRows(calls, inserted, callsIndex.hiddenIds) : null;
         }
+        heatmap = append && previousHeatmap != null
+                ? previousHeatmap.withInsertedRows(callsIndex.buckets, inserted) : null;
         
-        // Filter anwenden (Zeitraum + Blacklist)
-        applyFilter();
+        // Blacklist oder Regeln während des Ladens geändert → bis dahin den
+        // geladenen Stand zeigen, Typen und Index im Hintergrund nachziehen
+        if (stale) dispatchReindex();
+    }
+    
+    /**
+     * Beendet Observer und Loader-Thread. Ein zurückgehaltener Snapshot
+     * wird vorher noch gespeichert.
+     * 
+     * WICHTIG: Muss in onDestroy() aufgerufen werden!
+     * Danach werden keine Ergebnisse mehr an den Listener geliefert.
+     */
+    public void shutdown() {
+        if (shutdown) return;
+        shutdown = true;
+        stopObserving();
+        mainHandler.removeCallbacks(debouncedLoad);
+        if (debouncedSearch != null) mainHandler.removeCallbacks(debouncedSearch);
+        // Zurückgehaltenen Snapshot noch schreiben, dann Loader-Thread beenden
+        loaderExecutor.execute(this::writeSnapshot);
+        loaderExecutor.shutdown();
+        searchExecutor.shutdownNow();
     }
     
     /**
      * Setzt den Zeitraum-Filter und wendet ihn an.
      * 
-     * @param period Eine der PERIOD_* Konstanten
+     * Da der Store nach Datum sortiert ist (neueste zuerst), liegen alle
+     * Anrufe eines Zeitraums am Anfang. Es wird nur per binärer Suche das
+     * Ende des Bereichs bestimmt - O(log n), ohne Listen zu kopieren.
+     * Die Statistik der festen Zeiträume liegt seit dem Laden fertig vor
+     * (PeriodStatsTable), sonst kommt sie aus den Tages-Summen (DailyBuckets).
+     * 
+     * @param period Eine der PERIOD_* Konstanten (PERIOD_CUSTOM = zuletzt
+     *               mit setDateRange() gesetzter Bereich)
      */
     public void setTimePeriod(int period) {
         this.currentPeriod = period;
-        applyFilter();
+        applyTimeRange();
+    }
+    
+    /**
+     * Filtert auf einen beliebigen Datumsbereich (z.B. "1. – 15. März"),
+     * unabhängig von der aktuellen Uhrzeit. Setzt den Zeitraum auf PERIOD_CUSTOM.
+     * 
+     * Die Anrufe des Bereichs liegen im Store zusammenhängend in
+     * [countSince(to), countSince(from)) - zwei binäre Suchen, O(log n).
+     * Die Statistik kommt aus den Tages-Summen, ohne alle Zeilen zu zählen.
+     * 
+     * @param from Beginn in ms (inklusiv)
+     * @param to Ende in ms (exklusiv)
+     */
+    public void setDateRange(long from, long to) {
+        this.customFrom = from;
+        this.customTo = to;
+        this.currentPeriod = PERIOD_CUSTOM;
+        applyTimeRange();
+    }
+    
+    /**
+     * Bestimmt den sichtbaren Zeilen-Bereich für den aktuellen Zeitraum neu.
+     */
+    private void applyTimeRange() {
+        long from = getRangeFrom();
+        visibleStart = store.countSince(getRangeTo());
+        visibleEnd = store.countSince(from);
+        stats = null;
+        heatmap = null;
+        selection = null;
+        
+        // Längerer Zeitraum als bisher geladen? Fehlenden Ausschnitt nachladen.
+        // Bis dahin zeigt die UI die bereits geladenen (neueren) Anrufe.
+        if (loadedPlan != null && !loadedPlan.covers(CallLogQueryPlan.since(from))) {
+            loadCallLog();
+        }
     }
     
     public int getCurrentPeriod() {
@@ -237,45 +613,383 @@ public class CallLogHelper {
     }
     
     /**
-     * Prüft ob eine Nummer zu den "immer ausgehend" Nummern gehört.
-     * Siehe ALWAYS_OUTGOING Array für Erklärung.
+     * Beginn des aktuellen Zeitraums in ms (inklusiv), 0 bei PERIOD_ALL.
+     */
+    public long getRangeFrom() {
+        return currentPeriod == PERIOD_CUSTOM ? customFrom : getCutoffTime(currentPeriod);
+    }
+    
+    /**
+     * Ende des aktuellen Zeitraums in ms (exklusiv), Long.MAX_VALUE = bis jetzt.
+     */
+    public long getRangeTo() {
+        return currentPeriod == PERIOD_CUSTOM ? customTo : Long.MAX_VALUE;
+    }
+    
+    /**
+     * true solange nur vorläufige Daten angezeigt werden (Snapshot vom
+     * letzten Start oder Zwischenstand beim ersten Laden). Zahlen können
+     * sich dann noch ändern.
+     */
+    public boolean isProvisional() {
+        return provisional;
+    }
+    
+    /**
+     * Wendet eine geänderte Blacklist an (nach addNumber/removeNumber/clear).
+     * 
+     * Maske und Tages-Summen werden auf dem Loader-Thread neu berechnet
+     * (asynchron). Danach wird der OnCallLogChangedListener benachrichtigt,
+     * bis dahin liefern die Getter noch den bisherigen Stand.
+     */
+    public void applyBlacklist() {
+        filterGeneration++;
+        dispatchReindex();
+    }
+    
+    /**
+     * Wendet geänderte Typ-Regeln an (nach TypeOverrideManager.addRule/clear).
+     * 
+     * Die effectiveTypes-Spalte und die Tages-Summen werden wie bei
+     * applyBlacklist() auf dem Loader-Thread neu berechnet (asynchron).
+     */
+    public void applyTypeOverrides() {
+        filterGeneration++;
+        dispatchReindex();
+    }
+    
+    /**
+     * Berechnet Typen und Index des aktuellen Stores nach den aktuellen
+     * Regeln und der aktuellen Blacklist neu (Loader-Thread) und übernimmt
+     * das Ergebnis auf dem Main-Thread.
+     * 
+     * Die Typen werden immer neu angewendet, auch wenn sich nur die
+     * Blacklist geändert hat - sonst ginge eine noch nicht übernommene
+     * Regel-Änderung verloren, wenn ihr Ergebnis verworfen wird.
+     */
+    private void dispatchReindex() {
+        if (shutdown) return;
+        final CallLogStore base = store;
+        final StoreIndex sameRows = index;  // Zeilen und ursprüngliche Typen unverändert
+        final int generation = filterGeneration;
+        loaderExecutor.execute(() -> {
+            int key = filterKey();
+            CallLogStore calls = withTypeOverrides(base);
+            StoreIndex callsIndex = computeIndex(calls, sameRows);
+            // Gleiche Zeilen wie das letzte Ladeergebnis → Basis fürs Fortschreiben
+            // aktualisieren und mit der neuen Statistik speichern (beim nächsten Schreiben)
+            if (base == indexedStore) {
+                indexedStore = calls;
+                indexedIndex = callsIndex;
+                indexedGeneration = generation;
+                unsavedStore = calls;
+                unsavedPeriods = callsIndex.periods;
+                unsavedFilterKey = key;
+            }
+            mainHandler.post(() -> onReindexed(base, calls, callsIndex, generation));
+        });
+    }
+    
+    /**
+     * Übernimmt neu berechnete Typen und Index (Main-Thread).
+     * 
+     * Verworfen wird, wenn inzwischen ein anderer Store geladen wurde oder
+     * Blacklist/Regeln erneut geändert wurden - dafür läuft dann schon ein
+     * neuerer Auftrag.
+     */
+    private void onReindexed(CallLogStore base, CallLogStore calls, StoreIndex callsIndex,
+                             int generation) {
+        if (shutdown || store != base || generation != filterGeneration) return;
+        
+        store = calls;
+        index = callsIndex;
+        stats = null;
+        heatmap = null;
+        selection = null;
+        
+        if (changeListener != null) {
+            changeListener.onCallLogChanged();
+        }
+    }
+    
+    /**
+     * Gibt den Store mit effectiveTypes nach den aktuellen Regeln zurück.
+     * Kann auch auf dem Loader-Thread laufen.
+     */
+    private CallLogStore withTypeOverrides(CallLogStore calls) {
+        return calls.withForcedTypes(getForcedTypes(calls.getDictionary()));
+    }
+    
+    /**
+     * Wie withTypeOverrides(calls), wertet die Regeln aber nur für die
+     * inserted neuen Zeilen aus (Rest = previous, gleiche Regeln).
      */
-    private boolean isAlwaysOutgoing(String number) {
-        String normalized = number.replaceAll("[^0-9+]", "");
-        for (String outgoingNum : ALWAYS_OUTGOING) {
-            if (normalized.contains(outgoingNum) || outgoingNum.contains(normalized)) {
-                return true;
+    private CallLogStore withTypeOverrides(CallLogStore calls, CallLogStore previous, int inserted) {
+        return calls.withForcedTypes(getForcedTypes(calls.getDictionary()), previous, inserted);
+    }
+    
+    /**
+     * Ermittelt für jede Nummer des Wörterbuchs den erzwungenen Typ.
+     * 
+     * Die Regeln werden einmal pro unterschiedlicher Nummer ausgewertet und
+     * über Ladevorgänge hinweg gecacht, bis sich die Regel-Version ändert.
+     * 
+     * @return Array mit Index = numberId, Wert = CallLogEntry.TYPE_* oder -1
+     */
+    private synchronized byte[] getForcedTypes(NumberDictionary dictionary) {
+        byte[] forced = new byte[dictionary.size()];
+        Arrays.fill(forced, (byte) -1);
+        TypeOverrideManager overrides = typeOverrideManager;
+        if (overrides == null) return forced;
+        
+        int version = overrides.getVersion();
+        if (overrides != forcedSource || version != forcedVersion) {
+            forcedTypeCache.clear();
+            forcedSource = overrides;
+            forcedVersion = version;
+        }
+        
+        for (int id = 0; id < forced.length; id++) {
+            String normalized = dictionary.getNormalized(id);
+            Integer type = forcedTypeCache.get(normalized);
+            if (type == null) {
+                type = overrides.getForcedType(normalized);
+                forcedTypeCache.put(normalized, type);
             }
+            forced[id] = (byte) (int) type;
         }
-        return false;
+        return forced;
     }
     
     /**
-     * Gibt den effektiven Anruftyp zurück.
-     * Korrigiert den Typ für Nummern in ALWAYS_OUTGOING.
+     * Welche Zeilen eines Stores durch die Blacklist ausgeblendet sind,
+     * dazu die Tages-Summen der sichtbaren Zeilen, die Zeilen pro Nummer und
+     * der Such-Index über Nummern und Namen, dazu die Statistik aller
+     * festen Zeiträume (PeriodStatsTable).
+     * 
+     * Unabhängig vom Zeitraum - wird nur bei neuem Store, geänderter
+     * Blacklist oder geänderten Regeln berechnet. Unveränderlich, kann vom
+     * Loader-Thread kommen.
+     * 
+     * Beim Kaltstart gibt es bis zum Ende des ersten Ladevorgangs einen
+     * unvollständigen Index aus dem Snapshot (computeQuickIndex()):
+     * buckets == null, Posting-Listen und Such-Index leer, nur die
+     * gespeicherte Statistik der festen Zeiträume.
      */
-    private int getEffectiveType(CallLogEntry entry) {
-        if (isAlwaysOutgoing(entry.getNumber())) {
-            return CallLogEntry.TYPE_OUTGOING;
+    private static final class StoreIndex {
+        static final StoreIndex NONE = new StoreIndex(new boolean[0], null, DailyBuckets.EMPTY,
+                NumberPostings.EMPTY, NumberSearchIndex.EMPTY, PeriodStatsTable.EMPTY);
+        
+        final boolean[] hiddenIds;   // Index = numberId, true = ausgeblendet
+        // hiddenBefore[row] = Anzahl ausgeblendeter Zeilen in [0, row), null = keine ausgeblendet
+        final int[] hiddenBefore;
+        final DailyBuckets buckets;  // Statistik pro Tag, ohne ausgeblendete Nummern (null = noch nicht gebaut)
+        final NumberPostings postings;  // Zeilen pro Nummer (unabhängig von der Blacklist)
+        final NumberSearchIndex search; // Trigramme über Nummern und Namen (ebenso)
+        final PeriodStatsTable periods; // Statistik pro PERIOD_* (ohne ausgeblendete Nummern)
+        
+        StoreIndex(boolean[] hiddenIds, int[] hiddenBefore, DailyBuckets buckets,
+                   NumberPostings postings, NumberSearchIndex search, PeriodStatsTable periods) {
+            this.hiddenIds = hiddenIds;
+            this.hiddenBefore = hiddenBefore;
+            this.buckets = buckets;
+            this.postings = postings;
+            this.search = search;
+            this.periods = periods;
         }
-        return entry.getType();
+        
+        /** false solange nur der Index aus dem Snapshot vorliegt */
+        boolean isComplete() {
+            return buckets != null;
+        }
+        
+        /** Anzahl sichtbarer Zeilen in [0, end) */
+        int visibleCount(int end) {
+            return hiddenBefore == null ? end : end - hiddenBefore[end];
+        }
+    }
+    
+    /**
+     * Berechnet Blacklist-Maske und Tages-Summen für einen Store.
+     * 
+     * Verändert keine Felder und kann daher auch auf dem Loader-Thread laufen.
+     * Die Typen müssen schon angewendet sein (withTypeOverrides()).
+     */
+    private StoreIndex computeIndex(CallLogStore calls) {
+        return computeIndex(calls, null);
+    }
+    
+    /**
+     * Wie computeIndex(calls), übernimmt aber Posting-Listen und Such-Index
+     * eines Index für dieselben Zeilen (z.B. nach Blacklist-Änderung) -
+     * beide hängen nicht von Blacklist oder Regeln ab. Nur die Typ-Summen
+     * der Posting-Listen werden für die Regeln von calls neu gezählt.
+     * 
+     * @param sameRows Index für einen Store mit denselben Zeilen, null = alles neu bauen
+     *                 (ein unvollständiger Index wird nicht übernommen)
+     */
+    private StoreIndex computeIndex(CallLogStore calls, StoreIndex sameRows) {
+        boolean reuse = sameRows != null && sameRows.isComplete();
+        boolean[] hidden = getBlacklistedIds(calls.getDictionary());
+        DailyBuckets buckets = DailyBuckets.build(calls, hidden);
+        NumberPostings postings = reuse ? sameRows.postings.withTypesOf(calls)
+                : NumberPostings.build(calls);
+        NumberSearchIndex search = reuse ? sameRows.search
+                : NumberSearchIndex.build(calls.getDictionary());
+        PeriodStatsTable periods = PeriodStatsTable.build(calls, hidden, periodCutoffs());
+        return new StoreIndex(hidden, hiddenBefore(calls, hidden), buckets, postings, search, periods);
     }
     
     /**
-     * Wendet Zeitraum- und Blacklist-Filter auf die Anrufliste an.
+     * Index für den Kaltstart aus der im Snapshot gespeicherten Statistik.
      * 
-     * Füllt filteredCalls mit allen Anrufen die:
-     * - Nicht auf der Blacklist stehen
-     * - Im ausgewählten Zeitraum liegen
+     * Berechnet nur die Blacklist-Maske (pro Nummer) und deren Präfix-Summe.
+     * Tages-Summen, Posting-Listen und Such-Index fehlen noch - ohne
+     * Calendar, Sortieren und Trigramme, damit die Übersicht nicht auf
+     * deren Aufbau wartet. Der Index des ersten Ladevorgangs ersetzt ihn.
+     * 
+     * @param periods Gespeicherte Statistik für dieselben Zeilen, Blacklist und Regeln
      */
-    private void applyFilter() {
-        filteredCalls.clear();
+    private StoreIndex computeQuickIndex(CallLogStore calls, PeriodStatsTable periods) {
+        boolean[] hidden = getBlacklistedIds(calls.getDictionary());
+        return new StoreIndex(hidden, hiddenBefore(calls, hidden), null,
+                NumberPostings.EMPTY, NumberSearchIndex.EMPTY, periods);
+    }
+    
+    /**
+     * Präfix-Summe der ausgeblendeten Zeilen: erlaubt Größe und Index-Zugriff
+     * der sichtbaren Liste in O(log n).
+     * 
+     * @return hiddenBefore[row] = Anzahl ausgeblendeter Zeilen in [0, row),
+     *         null wenn keine Nummer ausgeblendet ist
+     */
+    private static int[] hiddenBefore(CallLogStore calls, boolean[] hidden) {
+        boolean any = false;
+        for (boolean h : hidden) {
+            if (h) { any = true; break; }
+        }
+        if (!any) return null;
         
+        int[] hiddenBefore = new int[calls.size() + 1];
+        for (int row = 0; row < calls.size(); row++) {
+            hiddenBefore[row + 1] = hiddenBefore[row] + (hidden[calls.getNumberId(row)] ? 1 : 0);
+        }
+        return hiddenBefore;
+    }
+    
+    /**
+     * Schreibt den Index um neu eingefügte Anrufe fort (Loader-Thread).
+     * 
+     * Gezählt werden nur die neuen Zeilen (und für die Tages-Summen der
+     * bisher neueste Tag). Alles Übrige wird aus previous übernommen, dabei
+     * werden Zeilen-Positionen nur um inserted verschoben - kein Sortieren,
+     * kein Calendar, kein neuer Such-Index. Ergebnis wie computeIndex(calls).
+     * 
+     * @param calls inserted neue Zeilen gefolgt vom Store von previous,
+     *              Blacklist und Regeln seitdem unverändert
+     */
+    private StoreIndex computeIndex(CallLogStore calls, StoreIndex previous, int inserted) {
+        boolean[] hidden = getBlacklistedIds(calls.getDictionary());
+        DailyBuckets buckets = previous.buckets.withInsertedRows(calls, hidden, inserted);
+        NumberPostings postings = previous.postings.withInsertedRows(calls, inserted);
+        NumberSearchIndex search = previous.search.withDictionary(calls.getDictionary());
+        PeriodStatsTable periods = previous.periods.withInsertedRows(calls, hidden, periodCutoffs(),
+                inserted);
+        
+        int hiddenNew = 0;
+        for (int row = 0; row < inserted; row++) {
+            if (hidden[calls.getNumberId(row)]) hiddenNew++;
+        }
+        if (hiddenNew == 0 && previous.hiddenBefore == null) {
+            return new StoreIndex(hidden, null, buckets, postings, search, periods);
+        }
+        
+        // Präfix-Summe: neue Zeilen zählen, alte Werte um deren Anzahl verschieben
+        int[] hiddenBefore = new int[calls.size() + 1];
+        for (int row = 0; row < inserted; row++) {
+            hiddenBefore[row + 1] = hiddenBefore[row] + (hidden[calls.getNumberId(row)] ? 1 : 0);
+        }
+        int previousRows = calls.size() - inserted;
+        for (int row = 1; row <= previousRows; row++) {
+            int before = previous.hiddenBefore != null ? previous.hiddenBefore[row] : 0;
+            hiddenBefore[inserted + row] = hiddenNew + before;
+        }
+        return new StoreIndex(hidden, hiddenBefore, buckets, postings, search, periods);
+    }
+    
+    /**
+     * Ermittelt für jede Nummer des Wörterbuchs, ob sie ausgeblendet ist.
+     * 
+     * Statt pro Anruf die Nummer zu normalisieren und mit allen Einträgen
+     * zu vergleichen, gibt es ein Urteil pro unterschiedlicher Nummer. Die
+     * Urteile werden über Ladevorgänge hinweg gecacht und nur verworfen,
+     * wenn sich die Blacklist-Version ändert. Echte Prüfungen gibt es also
+     * nur für neue Nummern oder nach einer Blacklist-Änderung.
+     * 
+     * @return Array mit Index = numberId, true = ausgeblendet
+     */
+    private synchronized boolean[] getBlacklistedIds(NumberDictionary dictionary) {
+        boolean[] hidden = new boolean[dictionary.size()];
+        BlacklistManager blacklist = blacklistManager;
+        if (blacklist == null) return hidden;
+        
+        // Version vor dem Prüfen lesen: ändert sich die Blacklist währenddessen,
+        // wird der Cache beim nächsten Aufruf verworfen
+        int version = blacklist.getVersion();
+        if (blacklist != verdictSource || version != verdictVersion) {
+            verdictCache.clear();
+            verdictSource = blacklist;
+            verdictVersion = version;
+        }
+        
+        for (int id = 0; id < hidden.length; id++) {
+            String normalized = dictionary.getNormalized(id);
+            Boolean verdict = verdictCache.get(normalized);
+            if (verdict == null) {
+                verdict = blacklist.isBlacklistedNormalized(normalized);
+                verdictCache.put(normalized, verdict);
+            }
+            hidden[id] = verdict;
+        }
+        return hidden;
+    }
+    
+    /**
+     * Schlüssel für die aktuellen Blacklist-Einträge und Typ-Regeln.
+     * 
+     * Wird mit dem Snapshot gespeichert: Die gespeicherte Statistik gilt
+     * beim nächsten Start nur, wenn der Schlüssel noch passt. Anders als
+     * getVersion() bleibt er über App-Starts gleich (Set-/Map-hashCode von
+     * Strings und Integers hängt nur vom Inhalt ab).
+     */
+    private int filterKey() {
+        BlacklistManager blacklist = blacklistManager;
+        TypeOverrideManager overrides = typeOverrideManager;
+        int key = blacklist != null ? blacklist.getBlacklistedNumbers().hashCode() : 0;
+        return 31 * key + (overrides != null ? overrides.getRules().hashCode() : 0);
+    }
+    
+    /** Beginn aller festen Zeiträume (PERIOD_ALL bis PERIOD_1_YEAR) */
+    private static long[] periodCutoffs() {
+        long[] cutoffs = new long[PERIOD_1_YEAR + 1];
+        for (int period = PERIOD_ALL; period <= PERIOD_1_YEAR; period++) {
+            cutoffs[period] = getCutoffTime(period);
+        }
+        return cutoffs;
+    }
+    
+    /**
+     * Berechnet den frühesten Zeitpunkt, der zum Zeitraum noch dazugehört.
+     * 
+     * @param period Eine der PERIOD_* Konstanten (außer PERIOD_CUSTOM, siehe getRangeFrom())
+     * @return Cutoff als Unix-Timestamp in ms, 0 bei PERIOD_ALL
+     */
+    public static long getCutoffTime(int period) {
         // Cutoff-Zeit berechnen basierend auf gewähltem Zeitraum
         long cutoffTime = 0;
-        if (currentPeriod != PERIOD_ALL) {
+        if (period != PERIOD_ALL) {
             cutoffTime = System.currentTimeMillis();
-            switch (currentPeriod) {
+            switch (period) {
                 case PERIOD_7_DAYS:
                     cutoffTime -= 7L * 24 * 60 * 60 * 1000;    // 7 Tage in ms
                     break;
@@ -293,27 +1007,138 @@ public class CallLogHelper {
                     break;
             }
         }
-        
-        // Jeden Anruf prüfen
-        for (CallLogEntry entry : allCalls) {
-            // Blacklist-Check: Ausgeblendete Nummern überspringen
-            if (blacklistManager != null && blacklistManager.isBlacklisted(entry.getNumber())) {
-                continue;
-            }
-            
-            // Zeit-Check: Nur Anrufe im gewählten Zeitraum
-            if (currentPeriod == PERIOD_ALL || entry.getTimestamp() >= cutoffTime) {
-                filteredCalls.add(entry);
-            }
-        }
+        return cutoffTime;
     }
 
     /**
      * Gibt die gefilterte Anrufliste zurück.
      * Diese Liste wird in der UI angezeigt.
+     * 
+     * Unveränderliche Sicht auf den Zeitraum-Bereich des Stores, ausgeblendete
+     * Zeilen werden übersprungen. Es wird nichts kopiert - CallLogEntry-Objekte
+     * werden erst beim Zugriff erzeugt (z.B. nur für sichtbare Listen-Zeilen).
      */
     public List<CallLogEntry> getAllCalls() {
-        return filteredCalls;
+        return getCalls(callQuery);
+    }
+    
+    /**
+     * Anrufe im aktuellen Zeitraum, auf die eine Abfrage zutrifft (ohne
+     * ausgeblendete Nummern). Ohne Abfrage (CallQuery.ALL) wie bisher eine
+     * Sicht auf den Zeilen-Bereich, sonst auf die ausgewählten Zeilen.
+     */
+    public List<CallLogEntry> getCalls(CallQuery query) {
+        if (query.isAll()) return store.viewOf(visibleStart, visibleEnd, index.hiddenBefore);
+        return store.viewOfRows(select(query));
+    }
+    
+    /**
+     * Setzt einen zusätzlichen Filter (z.B. nur verpasste Anrufe unbekannter
+     * Nummern). Gilt für Anrufliste, Statistik, Heatmap, Suche und Export,
+     * zusätzlich zu Zeitraum und Blacklist. CallQuery.ALL = kein Filter.
+     */
+    public void setQuery(CallQuery query) {
+        this.callQuery = query;
+        stats = null;
+        heatmap = null;
+        selection = null;
+    }
+    
+    public CallQuery getQuery() {
+        return callQuery;
+    }
+    
+    /**
+     * Zeilen im aktuellen Zeitraum für eine Abfrage. Für die aktive Abfrage
+     * bis zur nächsten Änderung zwischengespeichert.
+     */
+    private int[] select(CallQuery query) {
+        if (query == callQuery && selection != null) return selection;
+        int[] rows = query.select(store, visibleStart, visibleEnd, index.hiddenIds);
+        if (query == callQuery) selection = rows;
+        return rows;
+    }
+    
+    /**
+     * Sucht Anrufe im aktuellen Zeitraum, deren Nummer oder Kontaktname die
+     * Anfrage enthält (asynchron, entprellt).
+     * 
+     * Die Anfrage wird über den Trigramm-Index (NumberSearchIndex) zu
+     * numberIds aufgelöst und über deren Posting-Listen zu Zeilen - ohne alle
+     * Anrufe zu durchlaufen. Das läuft auf einem eigenen Such-Thread auf dem
+     * beim Absenden aktuellen Store (unveränderlich). Neue Anfragen innerhalb
+     * von SEARCH_DEBOUNCE_MS ersetzen die vorige, veraltete Ergebnisse
+     * werden verworfen.
+     * 
+     * @param query Suchtext, leer = alle Anrufe des Zeitraums (sofort)
+     * @param listener Bekommt die Treffer (neueste zuerst) auf dem Main-Thread
+     */
+    public void searchCalls(String query, OnSearchResultListener listener) {
+        if (shutdown) return;
+        final int generation = ++searchGeneration;
+        if (debouncedSearch != null) mainHandler.removeCallbacks(debouncedSearch);
+        debouncedSearch = null;
+        
+        if (query.trim().isEmpty()) {
+            listener.onSearchResult(query, getAllCalls());
+            return;
+        }
+        
+        debouncedSearch = () -> {
+            debouncedSearch = null;
+            // Stand beim Absenden festhalten - alles unveränderlich
+            final CallLogStore calls = store;
+            final StoreIndex callsIndex = index;
+            final int start = visibleStart;
+            final int end = visibleEnd;
+            final int[] selected = callQuery.isAll() ? null : select(callQuery);
+            searchExecutor.execute(() -> {
+                int[] numberIds = callsIndex.search.search(query);
+                int[] rows = callsIndex.postings.rowsOf(numberIds, callsIndex.hiddenIds, start, end);
+                if (selected != null) rows = intersectRows(rows, selected);
+                List<CallLogEntry> result = calls.viewOfRows(rows);
+                mainHandler.post(() -> {
+                    if (!shutdown && generation == searchGeneration) {
+                        listener.onSearchResult(query, result);
+                    }
+                });
+            });
+        };
+        mainHandler.postDelayed(debouncedSearch, SEARCH_DEBOUNCE_MS);
+    }
+    
+    /** Zeilen, die in beiden aufsteigenden Listen vorkommen */
+    private static int[] intersectRows(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    /**
+     * Anrufe einer Nummer im aktuellen Zeitraum (für den Detail-Dialog).
+     * 
+     * Liest die Posting-Liste der Nummer statt alle Anrufe zu durchsuchen:
+     * O(Anrufe dieser Nummer). Ausgeblendete Nummern liefern ein leeres Ergebnis.
+     * Eine aktive Abfrage (setQuery) gilt auch hier, damit die Zahlen zur
+     * Anrufliste passen.
+     * 
+     * @param sortByDuration true = längste zuerst, false = neueste zuerst
+     */
+    public NumberPostings.Slice getCallsForNumber(String number, boolean sortByDuration) {
+        int numberId = store.findNumberId(number);
+        if (numberId >= 0 && index.hiddenIds[numberId]) numberId = -1;
+        NumberPostings.Slice slice = index.postings.slice(numberId, visibleStart, visibleEnd, sortByDuration);
+        return callQuery.isAll() ? slice : slice.restrictedTo(select(callQuery));
     }
     
     /**
@@ -321,46 +1146,82 @@ public class CallLogHelper {
      * Enthält alle Anrufe, auch ausgeblendete.
      */
     public List<CallLogEntry> getAllCallsUnfiltered() {
-        return allCalls;
+        return store.asList();
     }
 
     // === Statistik-Methoden ===
-    // Zählen Anrufe nach Typ (mit Korrektur für ALWAYS_OUTGOING)
+    // Alle Werte kommen aus einem StatsSnapshot - für feste Zeiträume beim Laden
+    // vorberechnet, sonst aus den Tages-Summen für die Zeilen [visibleStart, visibleEnd)
+    // zusammengesetzt und bis zur nächsten Änderung (Laden, Zeitraum, Blacklist)
+    // wiederverwendet.
+
+    /**
+     * Gibt die Statistik für den aktuellen Filter zurück.
+     * Wird beim ersten Zugriff nach einer Änderung berechnet.
+     */
+    public StatsSnapshot getStats() {
+        if (stats == null) {
+            stats = getStats(callQuery);
+        }
+        return stats;
+    }
+
+    /**
+     * Statistik für die Anrufe im aktuellen Zeitraum, auf die eine Abfrage
+     * zutrifft. Ohne Abfrage aus den Tages-Summen, sonst ein Durchlauf über
+     * die ausgewählten Zeilen.
+     */
+    public StatsSnapshot getStats(CallQuery query) {
+        if (query.isAll()) {
+            // Fester Zeitraum → beim Laden schon berechnet, sonst aus den Tages-Summen
+            StatsSnapshot precomputed = index.periods.get(visibleStart, visibleEnd);
+            if (precomputed != null) return precomputed;
+            if (index.isComplete()) return index.buckets.summarizeRows(visibleStart, visibleEnd);
+        }
+        // Mit Abfrage (oder noch ohne Tages-Summen) ein Durchlauf über die Zeilen
+        StatsSnapshot.Builder builder = new StatsSnapshot.Builder(store);
+        if (query.isAll()) {
+            builder.addRows(visibleStart, visibleEnd, index.hiddenIds);
+        } else {
+            builder.addRows(select(query));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Anrufe nach Wochentag und Stunde für den aktuellen Filter.
+     * Wird beim ersten Zugriff nach einer Änderung aus den Tages-Summen
+     * zusammengesetzt, beim Nachladen neuer Anrufe fortgeschrieben.
+     */
+    public HeatmapCube getHeatmap() {
+        // Index aus dem Snapshot hat noch keine Tages-Summen → kommt mit dem ersten Laden
+        if (!index.isComplete()) return HeatmapCube.EMPTY;
+        if (heatmap == null) {
+            heatmap = callQuery.isAll()
+                    ? index.buckets.heatmapRows(visibleStart, visibleEnd)
+                    : index.buckets.heatmapOfRows(select(callQuery));
+        }
+        return heatmap;
+    }
 
     /** Anzahl eingehender Anrufe */
     public int getIncomingCount() {
-        int count = 0;
-        for (CallLogEntry entry : filteredCalls) {
-            if (getEffectiveType(entry) == CallLogEntry.TYPE_INCOMING) count++;
-        }
-        return count;
+        return getStats().getIncomingCount();
     }
 
     /** Anzahl ausgehender Anrufe */
     public int getOutgoingCount() {
-        int count = 0;
-        for (CallLogEntry entry : filteredCalls) {
-            if (getEffectiveType(entry) == CallLogEntry.TYPE_OUTGOING) count++;
-        }
-        return count;
+        return getStats().getOutgoingCount();
     }
 
     /** Anzahl verpasster Anrufe */
     public int getMissedCount() {
-        int count = 0;
-        for (CallLogEntry entry : filteredCalls) {
-            if (getEffectiveType(entry) == CallLogEntry.TYPE_MISSED) count++;
-        }
-        return count;
+        return getStats().getMissedCount();
     }
 
     /** Anzahl abgelehnter Anrufe */
     public int getRejectedCount() {
-        int count = 0;
-        for (CallLogEntry entry : filteredCalls) {
-            if (getEffectiveType(entry) == CallLogEntry.TYPE_REJECTED) count++;
-        }
-        return count;
+        return getStats().getRejectedCount();
     }
 
     /**
@@ -370,20 +1231,7 @@ public class CallLogHelper {
      * @return Liste von (Nummer → Anzahl) Paaren, sortiert nach Anzahl
      */
     public List<Map.Entry<String, Integer>> getTopCallers(int limit) {
-        // Anrufe pro Nummer zählen
-        Map<String, Integer> callerCount = new HashMap<>();
-        
-        for (CallLogEntry entry : filteredCalls) {
-            // compute: Wenn Key nicht existiert → 1, sonst +1
-            callerCount.compute(entry.getNumber(), (k, v) -> (v == null) ? 1 : v + 1);
-        }
-
-        // Nach Anzahl sortieren (absteigend)
-        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(callerCount.entrySet());
-        sorted.sort((a, b) -> b.getValue().compareTo(a.getValue()));
-        
-        // Nur die Top N zurückgeben
-        return sorted.subList(0, Math.min(limit, sorted.size()));
+        return getStats().getTopCallers(limit);
     }
 
     /**
@@ -393,37 +1241,27 @@ public class CallLogHelper {
      * @return Liste von (Nummer → Gesamtdauer in Sekunden) Paaren
      */
     public List<Map.Entry<String, Long>> getTopDuration(int limit) {
-        // Gesamtdauer pro Nummer summieren
-        Map<String, Long> callerDuration = new HashMap<>();
-        
-        for (CallLogEntry entry : filteredCalls) {
-            long duration = entry.getDuration();
-            callerDuration.compute(entry.getNumber(), (k, v) -> (v == null) ? duration : v + duration);
-        }
-
-        // Nach Dauer sortieren (absteigend)
-        List<Map.Entry<String, Long>> sorted = new ArrayList<>(callerDuration.entrySet());
-        sorted.sort((a, b) -> b.getValue().compareTo(a.getValue()));
-        
-        return sorted.subList(0, Math.min(limit, sorted.size()));
+        return getStats().getTopDuration(limit);
     }
 
     /**
      * Sucht den Kontaktnamen für eine Telefonnummer.
      * 
-     * Durchsucht die gefilterte Liste nach einem Eintrag mit dieser Nummer
-     * der einen Kontaktnamen hat. Gibt die Nummer selbst zurück wenn
-     * kein Name gefunden wird.
+     * O(1) über das NumberDictionary des Stores: Dort steht pro Nummer der
+     * Name des neuesten Anrufs mit nicht-leerem CACHED_NAME. Das Wörterbuch
+     * wird beim Laden und beim inkrementellen Nachladen mitgeführt, daher
+     * wird hier nie das Anrufprotokoll durchsucht (wichtig für
+     * onBindViewHolder und die Top-Listen).
+     * 
+     * Ausgeblendete Nummern bekommen keinen Namen.
      * 
      * @param number Telefonnummer
      * @return Kontaktname oder die Nummer wenn unbekannt
      */
     public String getContactNameForNumber(String number) {
-        for (CallLogEntry entry : filteredCalls) {
-            if (entry.getNumber().equals(number) && !entry.getContactName().isEmpty()) {
-                return entry.getContactName();
-            }
-        }
-        return number;  // Fallback: Nummer selbst zurückgeben
+        int numberId = store.findNumberId(number);
+        if (numberId < 0 || index.hiddenIds[numberId]) return number;
+        String name = store.getDictionary().getName(numberId);
+        return name.isEmpty() ? number : name;  // Fallback: Nummer selbst zurückgeben
     }
 }
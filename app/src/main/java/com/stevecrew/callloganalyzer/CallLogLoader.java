@@ -0,0 +1,310 @@
+package com.stevecrew.callloganalyzer;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CallLog;
+
+/**
+ * Liest Anrufe aus der Android CallLog-Datenbank (ContentResolver).
+ *
+ * Läuft ausschließlich auf dem Loader-Thread von CallLogHelper und hält
+ * dort den Watermark für inkrementelles Laden:
+ * - Höchste geladene _ID
+ * - Neueste gesehene LAST_MODIFIED (erkennt nachträgliche Edits)
+ *
+ * Welche Zeilen geladen werden, beschreibt ein CallLogQueryPlan (Zeitraum) -
+ * der Filter läuft direkt im Provider statt in Java.
+ *
+ * Jeder Ladevorgang liefert einen NEUEN CallLogStore zurück. Stores sind
+ * unveränderlich und können daher gefahrlos an den Main-Thread übergeben werden.
+ *
+ * Benötigt READ_CALL_LOG Permission!
+ */
+public class CallLogLoader {
+
+    /**
+     * Callback für Zwischenstände beim Vollladen.
+     * Wird auf dem Loader-Thread aufgerufen.
+     */
+    public interface OnPageLoadedListener {
+        /**
+         * @param partial Unveränderlicher Store mit den bisher gelesenen
+         *                (neuesten) Anrufen
+         */
+        void onPageLoaded(CallLogStore partial);
+    }
+
+    /**
+     * Spalten die beim Laden abgefragt werden.
+     */
+    private static final String[] PROJECTION = {
+        CallLog.Calls._ID,            // Zeilen-ID (für Watermark)
+        CallLog.Calls.NUMBER,         // Telefonnummer
+        CallLog.Calls.CACHED_NAME,    // Kontaktname (cached vom System)
+        CallLog.Calls.TYPE,           // Anruftyp (1=incoming, 2=outgoing, 3=missed, 5=rejected)
+        CallLog.Calls.DURATION,       // Dauer in Sekunden
+        CallLog.Calls.DATE,           // Timestamp in Millisekunden
+        CallLog.Calls.LAST_MODIFIED   // Letzte Änderung der Zeile (für Edit-Erkennung)
+    };
+
+    /** Zeilen pro Seite beim Laden (hält das Cursor-Fenster klein) */
+    private static final int PAGE_SIZE = 500;
+
+    /** Erste Seite: etwa ein Bildschirm voll, damit die Liste schnell etwas zeigt */
+    private static final int FIRST_PAGE_SIZE = 50;
+
+    /** Sortierung für Keyset-Paging: eindeutig durch _ID als zweites Kriterium */
+    private static final String PAGE_SORT_ORDER =
+        CallLog.Calls.DATE + " DESC, " + CallLog.Calls._ID + " DESC";
+
+    private final Context context;
+
+    // Welcher Ausschnitt zuletzt geladen wurde (nur Loader-Thread)
+    private CallLogQueryPlan currentPlan = CallLogQueryPlan.ALL;
+
+    // === Watermark für inkrementelles Laden (nur Loader-Thread) ===
+    // Höchste bereits geladene _ID (-1 = noch nichts geladen → Vollladen nötig)
+    private long maxIngestedId = -1;
+    // Neueste gesehene Änderung (LAST_MODIFIED) - erkennt nachträgliche Edits
+    private long maxIngestedModified = 0;
+    // Ergebnis des letzten Ladevorgangs (Basis für inkrementelles Nachladen)
+    private CallLogStore lastResult;
+    // Anzahl der beim letzten loadNew() vorne eingefügten Zeilen (-1 = komplett neu geladen)
+    private int lastInsertedCount = -1;
+
+    /**
+     * @param context Android Context (wird für ContentResolver benötigt)
+     */
+    public CallLogLoader(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Lädt alle Anrufe die der Plan beschreibt, sortiert nach Datum (neueste zuerst).
+     * Setzt den Watermark komplett neu.
+     *
+     * Der Zeitraum wird als WHERE-Klausel an den Provider geschickt,
+     * gelesen wird seitenweise (PAGE_SIZE Zeilen) über einen Keyset auf
+     * (DATE, _ID). So bleibt jedes Cursor-Fenster klein und bei kurzen
+     * Zeiträumen werden alte Zeilen gar nicht erst angefasst.
+     *
+     * Zwischenstände werden während des Lesens gemeldet: Die erste Seite
+     * ist klein (FIRST_PAGE_SIZE) und wird sofort gemeldet. Danach wird
+     * gemeldet, sobald sich die Anzahl gelesener Zeilen seit der
+     * letzten Meldung verdoppelt hat - so bleiben es wenige Meldungen, auch
+     * bei sehr großen Anrufprotokollen.
+     *
+     * @param plan Welche Zeilen geladen werden sollen
+     * @param pageListener Empfänger der Zwischenstände, kann null sein
+     * @return Neuer Store mit den geladenen Anrufen
+     */
+    public CallLogStore load(CallLogQueryPlan plan, OnPageLoadedListener pageListener) {
+        lastInsertedCount = -1;
+        maxIngestedId = -1;
+        maxIngestedModified = 0;
+        currentPlan = plan;
+
+        CallLogStore.Builder calls = new CallLogStore.Builder(null);
+        Uri firstPageUri = pageUri(FIRST_PAGE_SIZE);
+        Uri pageUri = pageUri(PAGE_SIZE);
+
+        String keyset = null;        // Beim ersten Durchlauf: ab der neuesten Zeile
+        String[] keysetArgs = null;
+        int published = 0;           // Zeilen bei der letzten Zwischenmeldung
+        while (true) {
+            boolean firstPage = keyset == null;
+            int limit = firstPage ? FIRST_PAGE_SIZE : PAGE_SIZE;
+            // Query ausführen, sortiert nach Datum (neueste zuerst)
+            Cursor cursor = context.getContentResolver().query(
+                firstPage ? firstPageUri : pageUri,
+                PROJECTION,
+                plan.buildSelection(keyset),
+                plan.buildSelectionArgs(keysetArgs),
+                PAGE_SORT_ORDER
+            );
+            if (cursor == null) break;
+
+            // Cursor durchlaufen, Zeilen direkt in die Spalten schreiben
+            int before = calls.size();
+            readRows(cursor, calls);
+            cursor.close();  // Cursor immer schließen!
+
+            int read = calls.size() - before;
+            if (read < limit) break;  // Letzte Seite erreicht
+
+            // Zwischenstand melden (die letzte Seite nicht - das ist das Endergebnis)
+            if (pageListener != null && (published == 0 || calls.size() >= 2 * published)) {
+                published = calls.size();
+                pageListener.onPageLoaded(calls.buildPartial());
+            }
+
+            // Nächste Seite beginnt hinter der ältesten gelesenen Zeile
+            int last = calls.size() - 1;
+            keyset = CallLog.Calls.DATE + " < ? OR (" + CallLog.Calls.DATE + " = ? AND "
+                + CallLog.Calls._ID + " < ?)";
+            keysetArgs = new String[] {
+                String.valueOf(calls.getTimestamp(last)),
+                String.valueOf(calls.getTimestamp(last)),
+                String.valueOf(calls.getId(last))
+            };
+        }
+
+        lastResult = calls.build();
+        return lastResult;
+    }
+
+    /**
+     * Lädt nur die Anrufe nach, die seit dem letzten Laden hinzugekommen sind.
+     *
+     * Statt bei jeder Änderung die komplette Tabelle neu zu lesen, merken wir
+     * uns die höchste _ID und LAST_MODIFIED (Watermark) und
+     * fragen nur Zeilen darüber ab.
+     *
+     * Es gilt derselbe Plan (Zeitraum) wie beim letzten load().
+     *
+     * Ein komplettes Neuladen (load()) passiert nur wenn:
+     * - noch nie geladen wurde
+     * - die übergebene Zeilen-URI auf eine bereits geladene Zeile zeigt (Edit)
+     * - eine bereits geladene Zeile geändert wurde (LAST_MODIFIED neuer, _ID alt)
+     * - Zeilen gelöscht wurden (Anzahl alter Zeilen stimmt nicht mehr)
+     *
+     * @param uri URI aus ContentObserver.onChange() (kann null oder die
+     *            allgemeine CONTENT_URI sein, dann wird nur der Watermark verwendet)
+     * @return Neuer Store mit allen Anrufen, oder null wenn sich nichts geändert hat
+     */
+    public CallLogStore loadNew(Uri uri) {
+        if (lastResult == null) {
+            return load(currentPlan, null);
+        }
+
+        // Zeilen-URI (content://call_log/calls/123) → auf bekannte Zeile? Dann Edit
+        long rowId = parseRowId(uri);
+        if (rowId >= 0 && rowId <= maxIngestedId) {
+            return load(currentPlan, null);
+        }
+
+        // Löschungen erkennen: Alle bekannten Zeilen müssen noch da sein
+        if (countRowsUpTo(maxIngestedId) != lastResult.size()) {
+            return load(currentPlan, null);
+        }
+
+        // Neue (und seit dem letzten Laden geänderte) Zeilen im selben Ausschnitt abfragen
+        Cursor cursor = context.getContentResolver().query(
+            CallLog.Calls.CONTENT_URI,
+            PROJECTION,
+            currentPlan.buildSelection(
+                CallLog.Calls._ID + " > ? OR " + CallLog.Calls.LAST_MODIFIED + " > ?"),
+            currentPlan.buildSelectionArgs(
+                String.valueOf(maxIngestedId), String.valueOf(maxIngestedModified)),
+            CallLog.Calls.DATE + " DESC"
+        );
+        if (cursor == null) return null;
+
+        long previousMaxId = maxIngestedId;
+        // Nummern-Tabelle des bisherigen Stores weiterverwenden, damit die numberIds passen
+        CallLogStore.Builder newCalls = new CallLogStore.Builder(lastResult);
+        readRows(cursor, newCalls);
+        cursor.close();
+
+        if (newCalls.size() == 0) return null;
+
+        // Geänderte alte Zeile dabei? (z.B. Kontaktname nachträglich aufgelöst)
+        for (int i = 0; i < newCalls.size(); i++) {
+            if (newCalls.getId(i) <= previousMaxId) {
+                return load(currentPlan, null);
+            }
+        }
+
+        // Neue Anrufe vorne einfügen (Store ist nach DATE absteigend sortiert).
+        // Ältere nachträglich eingefügte Anrufe (z.B. Backup-Import) werden dabei einsortiert.
+        CallLogStore inserted = newCalls.build();
+        boolean atFront = lastResult.size() == 0
+                || inserted.getTimestamp(inserted.size() - 1) >= lastResult.getTimestamp(0);
+        lastResult = lastResult.prependedWith(inserted);
+        lastInsertedCount = atFront ? inserted.size() : -1;
+        return lastResult;
+    }
+
+    /**
+     * Anzahl der Zeilen, die der letzte Ladevorgang vorne an den vorherigen
+     * Store angehängt hat - alle übrigen Zeilen sind unverändert dahinter.
+     *
+     * @return Anzahl neuer Zeilen [0, n), oder -1 wenn komplett neu geladen
+     *         oder neu sortiert wurde (dann muss alles neu berechnet werden)
+     */
+    public int getLastInsertedCount() {
+        return lastInsertedCount;
+    }
+
+    /**
+     * Liest alle Zeilen eines Cursors in den Builder und aktualisiert den Watermark.
+     */
+    private void readRows(Cursor cursor, CallLogStore.Builder target) {
+        // Spalten-Indizes einmal auflösen statt pro Zeile
+        int idCol = cursor.getColumnIndexOrThrow(CallLog.Calls._ID);
+        int numberCol = cursor.getColumnIndexOrThrow(CallLog.Calls.NUMBER);
+        int nameCol = cursor.getColumnIndexOrThrow(CallLog.Calls.CACHED_NAME);
+        int typeCol = cursor.getColumnIndexOrThrow(CallLog.Calls.TYPE);
+        int durationCol = cursor.getColumnIndexOrThrow(CallLog.Calls.DURATION);
+        int dateCol = cursor.getColumnIndexOrThrow(CallLog.Calls.DATE);
+        int modifiedCol = cursor.getColumnIndexOrThrow(CallLog.Calls.LAST_MODIFIED);
+
+        while (cursor.moveToNext()) {
+            long id = cursor.getLong(idCol);
+            String number = cursor.getString(numberCol);
+            String name = cursor.getString(nameCol);
+            int type = cursor.getInt(typeCol);
+            long duration = cursor.getLong(durationCol);
+            long date = cursor.getLong(dateCol);
+            long modified = cursor.getLong(modifiedCol);
+
+            target.add(id, number, name, type, duration, date);
+
+            if (id > maxIngestedId) maxIngestedId = id;
+            if (modified > maxIngestedModified) maxIngestedModified = modified;
+        }
+    }
+
+    /**
+     * CONTENT_URI mit LIMIT-Parameter für eine Seite.
+     */
+    private static Uri pageUri(int limit) {
+        return CallLog.Calls.CONTENT_URI.buildUpon()
+            .appendQueryParameter(CallLog.Calls.LIMIT_PARAM_KEY, String.valueOf(limit))
+            .build();
+    }
+
+    /**
+     * Zählt die Zeilen mit _ID <= maxId im aktuellen Ausschnitt (nur ID-Spalte, sehr günstig).
+     * Weicht das Ergebnis von der Anzahl geladener Zeilen ab, wurde gelöscht.
+     */
+    private int countRowsUpTo(long maxId) {
+        Cursor cursor = context.getContentResolver().query(
+            CallLog.Calls.CONTENT_URI,
+            new String[] { CallLog.Calls._ID },
+            currentPlan.buildSelection(CallLog.Calls._ID + " <= ?"),
+            currentPlan.buildSelectionArgs(String.valueOf(maxId)),
+            null
+        );
+        if (cursor == null) return -1;
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    /**
+     * Extrahiert die Zeilen-ID aus einer CallLog-URI.
+     *
+     * @return ID der Zeile, oder -1 wenn die URI keine Zeilen-URI ist
+     */
+    private long parseRowId(Uri uri) {
+        if (uri == null) return -1;
+        try {
+            return ContentUris.parseId(uri);
+        } catch (NumberFormatException | UnsupportedOperationException e) {
+            return -1;  // z.B. content://call_log/calls ohne ID
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.stevecrew.callloganalyzer;
+
+import android.provider.CallLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Beschreibt welcher Ausschnitt des Anrufprotokolls geladen werden soll.
+ *
+ * Statt immer die komplette Tabelle zu lesen und erst in Java zu filtern,
+ * wird der Zeitraum als WHERE-Klausel an den CallLog-Provider geschickt:
+ * - DATE >= since  (z.B. letzte 7 Tage)
+ *
+ * Die komplette Tabelle wird nur gelesen wenn since == 0 (PERIOD_ALL).
+ *
+ * Anruftypen werden bewusst nicht im Provider gefiltert: Typ-Regeln
+ * (TypeOverrideManager) ändern den effektiven Typ erst nach dem Laden,
+ * ein TYPE IN (...) auf den Roh-Typ würde also falsche Zeilen weglassen.
+ *
+ * Objekte sind unveränderlich und können zwischen Threads geteilt werden.
+ */
+public class CallLogQueryPlan {
+
+    /** Plan ohne Einschränkung: alle Anrufe */
+    public static final CallLogQueryPlan ALL = new CallLogQueryPlan(0);
+
+    private final long since;    // Untergrenze für DATE in ms (0 = keine)
+
+    private CallLogQueryPlan(long since) {
+        this.since = since;
+    }
+
+    /**
+     * Erstellt einen Plan für einen Zeitraum.
+     *
+     * @param since Untergrenze für DATE in ms (0 = alle Anrufe)
+     */
+    public static CallLogQueryPlan since(long since) {
+        return since <= 0 ? ALL : new CallLogQueryPlan(since);
+    }
+
+    /**
+     * Prüft ob die mit diesem Plan geladenen Daten auch alles enthalten,
+     * was der andere Plan liefern würde (dann muss nicht neu geladen werden).
+     */
+    public boolean covers(CallLogQueryPlan other) {
+        return since <= other.since;
+    }
+
+    /**
+     * Baut die WHERE-Klausel für den Provider.
+     *
+     * @param extra Zusätzliche Bedingung (z.B. Keyset für Paging), kann null sein
+     * @return Selection-String, oder null wenn keine Einschränkung besteht
+     */
+    public String buildSelection(String extra) {
+        List<String> clauses = new ArrayList<>();
+        if (since > 0) {
+            clauses.add(CallLog.Calls.DATE + " >= ?");
+        }
+        if (extra != null) {
+            clauses.add("(" + extra + ")");
+        }
+        return clauses.isEmpty() ? null : String.join(" AND ", clauses);
+    }
+
+    /**
+     * Baut die Argumente passend zu buildSelection().
+     *
+     * @param extraArgs Argumente für die zusätzliche Bedingung, kann null sein
+     */
+    public String[] buildSelectionArgs(String... extraArgs) {
+        List<String> args = new ArrayList<>();
+        if (since > 0) {
+            args.add(String.valueOf(since));
+        }
+        if (extraArgs != null) {
+            args.addAll(Arrays.asList(extraArgs));
+        }
+        return args.isEmpty() ? null : args.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,280 @@
+package com.stevecrew.callloganalyzer;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Speichert den zuletzt geladenen CallLogStore als Binärdatei im
+ * privaten App-Speicher (getFilesDir()).
+ *
+ * Beim Kaltstart wird die Datei per Memory-Mapping gelesen und sofort
+ * angezeigt - ohne ContentResolver-Query und Cursor. Danach lädt
+ * CallLogHelper im Hintergrund die echten Daten und ersetzt den Snapshot.
+ *
+ * Mitgespeichert wird die Statistik der festen Zeiträume (PeriodStatsTable),
+ * damit die Übersicht ohne Tages-Summen, Posting-Listen und Such-Index
+ * gezeichnet werden kann. Sie gilt nur für dieselben Blacklist-Einträge und
+ * Regeln (filterKey, von CallLogHelper vergeben).
+ *
+ * Format (Big Endian):
+ * - int MAGIC, int VERSION, int Anzahl Nummern, int Anzahl Zeilen
+ * - Pro Nummer: Nummer und Kontaktname (je int Länge + UTF-8 Bytes)
+ * - Spalten: long[] ids, long[] timestamps, int[] durations,
+ *   byte[] types, int[] numberIds
+ * - int filterKey, int Anzahl Zeiträume
+ * - Pro Zeitraum: int Zeilen-Ende, int incoming, outgoing, missed, rejected,
+ *   int Gesamtzahl, long Gesamtdauer, int Anzahl Nummern mit Anrufen,
+ *   pro Nummer: int numberId, int Anzahl, long Dauer
+ *
+ * Nur auf dem Loader-Thread verwenden.
+ */
+public class CallLogSnapshot {
+
+    private static final String TAG = "CallLogSnapshot";
+    private static final String FILE_NAME = "calllog.snapshot";
+    private static final int MAGIC = 0x434C5331;  // "CLS1"
+    private static final int VERSION = 2;
+
+    private final File file;
+
+    /**
+     * Inhalt eines gelesenen Snapshots.
+     */
+    public static final class Contents {
+        /** Gespeicherte Anrufe (Typen ohne Override-Regeln) */
+        public final CallLogStore store;
+        /** Blacklist/Regeln, für die periods berechnet wurde */
+        public final int filterKey;
+        /** Statistik der festen Zeiträume für store (adressiert über Zeilen-Bereiche) */
+        public final PeriodStatsTable periods;
+
+        Contents(CallLogStore store, int filterKey, PeriodStatsTable periods) {
+            this.store = store;
+            this.filterKey = filterKey;
+            this.periods = periods;
+        }
+    }
+
+    /**
+     * @param context Android Context (für getFilesDir())
+     */
+    public CallLogSnapshot(Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Liest den Snapshot.
+     *
+     * @return Inhalt der Datei, oder null wenn keine (gültige) Datei existiert
+     */
+    public Contents read() {
+        if (!file.isFile()) return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                delete();
+                return null;
+            }
+            int numberCount = buffer.getInt();
+            int size = buffer.getInt();
+            // Plausibilität: jede Zeile braucht mindestens 25 Bytes
+            if (numberCount < 0 || size < 0 || (long) size * 25 > buffer.remaining()) {
+                delete();
+                return null;
+            }
+
+            // Wörterbuch in derselben ID-Reihenfolge wieder aufbauen
+            NumberDictionary.Builder dictionary = new NumberDictionary.Builder(null);
+            for (int id = 0; id < numberCount; id++) {
+                String number = readString(buffer);
+                String name = readString(buffer);
+                if (dictionary.add(number, name) != id) {
+                    delete();  // Doppelte Nummer → Datei kaputt
+                    return null;
+                }
+            }
+
+            // Spalten als Block aus dem gemappten Speicher kopieren
+            long[] ids = new long[size];
+            long[] timestamps = new long[size];
+            int[] durations = new int[size];
+            byte[] types = new byte[size];
+            int[] numberIds = new int[size];
+            buffer.asLongBuffer().get(ids);
+            buffer.position(buffer.position() + size * 8);
+            buffer.asLongBuffer().get(timestamps);
+            buffer.position(buffer.position() + size * 8);
+            buffer.asIntBuffer().get(durations);
+            buffer.position(buffer.position() + size * 4);
+            buffer.get(types);
+            buffer.asIntBuffer().get(numberIds);
+            buffer.position(buffer.position() + size * 4);
+
+            for (int numberId : numberIds) {
+                if (numberId < 0 || numberId >= numberCount) {
+                    delete();
+                    return null;
+                }
+            }
+            CallLogStore store = CallLogStore.fromColumns(size, ids, timestamps, durations, types,
+                    numberIds, dictionary.build());
+
+            int filterKey = buffer.getInt();
+            PeriodStatsTable periods = readPeriods(buffer, store);
+            if (periods == null) {
+                delete();
+                return null;
+            }
+            return new Contents(store, filterKey, periods);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Log.w(TAG, "Snapshot unlesbar, wird verworfen", e);
+            delete();
+            return null;
+        }
+    }
+
+    /**
+     * Liest die Statistik der festen Zeiträume.
+     *
+     * Aufwand O(Zeiträume × Nummern) - unabhängig von der Anzahl Anrufe.
+     *
+     * @return Tabelle, oder null wenn die Daten nicht zum Store passen
+     */
+    private static PeriodStatsTable readPeriods(ByteBuffer buffer, CallLogStore store) {
+        int count = buffer.getInt();
+        if (count < 0 || count > CallLogHelper.PERIOD_1_YEAR + 1) return null;
+
+        int numberCount = store.getNumberCount();
+        int[] ends = new int[count];
+        StatsSnapshot[] snapshots = new StatsSnapshot[count];
+        for (int i = 0; i < count; i++) {
+            ends[i] = buffer.getInt();
+            if (ends[i] < 0 || ends[i] > store.size() || (i > 0 && ends[i] <= ends[i - 1])) {
+                return null;
+            }
+
+            StatsSnapshot.Builder builder = new StatsSnapshot.Builder(store);
+            builder.addTypeCount(CallLogEntry.TYPE_INCOMING, buffer.getInt());
+            builder.addTypeCount(CallLogEntry.TYPE_OUTGOING, buffer.getInt());
+            builder.addTypeCount(CallLogEntry.TYPE_MISSED, buffer.getInt());
+            builder.addTypeCount(CallLogEntry.TYPE_REJECTED, buffer.getInt());
+            builder.addTotals(buffer.getInt(), buffer.getLong());
+
+            int entries = buffer.getInt();
+            if (entries < 0 || entries > numberCount) return null;
+            for (int e = 0; e < entries; e++) {
+                int numberId = buffer.getInt();
+                if (numberId < 0 || numberId >= numberCount) return null;
+                builder.addNumber(numberId, buffer.getInt(), buffer.getLong());
+            }
+            snapshots[i] = builder.build();
+        }
+        return new PeriodStatsTable(ends, snapshots);
+    }
+
+    /**
+     * Schreibt den Store samt Statistik der festen Zeiträume in die Datei.
+     *
+     * Es wird erst in eine temporäre Datei geschrieben und diese dann
+     * umbenannt - ein Absturz beim Schreiben hinterlässt keine halbe Datei.
+     *
+     * @param periods Statistik für store (aus dem Index des Stores)
+     * @param filterKey Blacklist/Regeln, mit denen periods berechnet wurde
+     */
+    public void write(CallLogStore store, PeriodStatsTable periods, int filterKey) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+            NumberDictionary dictionary = store.getDictionary();
+            int size = store.size();
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dictionary.size());
+            out.writeInt(size);
+
+            for (int id = 0; id < dictionary.size(); id++) {
+                writeString(out, dictionary.getNumber(id));
+                writeString(out, dictionary.getName(id));
+            }
+
+            for (int row = 0; row < size; row++) out.writeLong(store.getId(row));
+            for (int row = 0; row < size; row++) out.writeLong(store.getTimestamp(row));
+            for (int row = 0; row < size; row++) out.writeInt(store.getDuration(row));
+            for (int row = 0; row < size; row++) out.writeByte(store.getType(row));
+            for (int row = 0; row < size; row++) out.writeInt(store.getNumberId(row));
+
+            out.writeInt(filterKey);
+            out.writeInt(periods.size());
+            for (int i = 0; i < periods.size(); i++) {
+                StatsSnapshot stats = periods.getSnapshot(i);
+                out.writeInt(periods.getEnd(i));
+                out.writeInt(stats.getIncomingCount());
+                out.writeInt(stats.getOutgoingCount());
+                out.writeInt(stats.getMissedCount());
+                out.writeInt(stats.getRejectedCount());
+                out.writeInt(stats.getTotalCalls());
+                out.writeLong(stats.getTotalDuration());
+
+                // Nur Nummern mit Anrufen im Zeitraum
+                int entries = 0;
+                for (int id = 0; id < dictionary.size(); id++) {
+                    if (stats.getCallCount(id) > 0) entries++;
+                }
+                out.writeInt(entries);
+                for (int id = 0; id < dictionary.size(); id++) {
+                    if (stats.getCallCount(id) == 0) continue;
+                    out.writeInt(id);
+                    out.writeInt(stats.getCallCount(id));
+                    out.writeLong(stats.getDuration(id));
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Snapshot konnte nicht geschrieben werden", e);
+            tmp.delete();
+            return;
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Löscht den Snapshot (z.B. wenn die Permission entzogen wurde).
+     */
+    public void delete() {
+        file.delete();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Ungültige String-Länge: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
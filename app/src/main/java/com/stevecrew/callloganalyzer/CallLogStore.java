@@ -0,0 +1,448 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Spaltenorientierter Speicher für geladene Anrufe ("Struct of Arrays").
+ *
+ * Statt einer ArrayList mit einem CallLogEntry-Objekt pro Anruf liegen die
+ * Daten in primitiven Arrays, eine Zeile pro Anruf:
+ * - long[] ids         (CallLog.Calls._ID)
+ * - long[] timestamps  (DATE in ms)
+ * - int[] durations    (Sekunden)
+ * - byte[] types       (CallLogEntry.TYPE_*)
+ * - int[] numberIds    (ID im NumberDictionary)
+ * - byte[] effectiveTypes (Typ nach Override-Regeln, siehe withForcedTypes())
+ *
+ * Vorteile bei großen Anruflisten:
+ * - Viel weniger Objekte auf dem Heap → weniger GC
+ * - Statistik-Schleifen laufen linear über primitive Arrays (Cache-freundlich)
+ * - Telefonnummern und Kontaktnamen werden pro unterschiedlicher Nummer nur
+ *   einmal gespeichert (NumberDictionary)
+ *
+ * Zeilen sind nach Datum sortiert, neueste zuerst (Zeile 0 = neuester Anruf).
+ * CallLogEntry-Objekte werden nur bei Bedarf erzeugt (entryAt(), asList()).
+ *
+ * Ein Store ist nach build() unveränderlich und kann zwischen Loader-Thread
+ * und Main-Thread geteilt werden. Neue Anrufe erzeugen einen neuen Store.
+ */
+public class CallLogStore {
+
+    /** Leerer Store (vor dem ersten Laden) */
+    public static final CallLogStore EMPTY = new Builder(null).build();
+
+    // === Spalten (Länge >= size, nur [0, size) ist gültig) ===
+    private final int size;
+    private final long[] ids;
+    private final long[] timestamps;
+    private final int[] durations;
+    private final byte[] types;
+    private final int[] numberIds;
+    // Typ nach TypeOverrideManager-Regeln (gleiches Array wie types wenn keine Regel greift)
+    private final byte[] effectiveTypes;
+
+    // === Nummern-Wörterbuch: numberId → Nummer, normalisierte Nummer, Kontaktname ===
+    private final NumberDictionary dictionary;
+
+    private CallLogStore(int size, long[] ids, long[] timestamps, int[] durations, byte[] types,
+                         int[] numberIds, NumberDictionary dictionary) {
+        this(size, ids, timestamps, durations, types, numberIds, types, dictionary);
+    }
+
+    private CallLogStore(int size, long[] ids, long[] timestamps, int[] durations, byte[] types,
+                         int[] numberIds, byte[] effectiveTypes, NumberDictionary dictionary) {
+        this.size = size;
+        this.ids = ids;
+        this.timestamps = timestamps;
+        this.durations = durations;
+        this.types = types;
+        this.numberIds = numberIds;
+        this.effectiveTypes = effectiveTypes;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Erzeugt einen Store direkt aus fertigen Spalten (z.B. aus CallLogSnapshot).
+     * Die Arrays werden übernommen, nicht kopiert.
+     */
+    static CallLogStore fromColumns(int size, long[] ids, long[] timestamps, int[] durations,
+                                    byte[] types, int[] numberIds, NumberDictionary dictionary) {
+        return new CallLogStore(size, ids, timestamps, durations, types, numberIds, dictionary);
+    }
+
+    // === Zeilen-Zugriff ===
+
+    /** Anzahl Anrufe */
+    public int size() { return size; }
+
+    public long getId(int row) { return ids[row]; }
+    public long getTimestamp(int row) { return timestamps[row]; }
+    public int getDuration(int row) { return durations[row]; }
+    public int getType(int row) { return types[row]; }
+
+    /** Typ nach Override-Regeln - für Statistiken statt getType() verwenden */
+    public int getEffectiveType(int row) { return effectiveTypes[row]; }
+    public int getNumberId(int row) { return numberIds[row]; }
+    public String getNumber(int row) { return dictionary.getNumber(numberIds[row]); }
+
+    /** Bester Kontaktname der Nummer dieser Zeile ("" wenn unbekannt) */
+    public String getContactName(int row) { return dictionary.getName(numberIds[row]); }
+
+    // === Nummern-Wörterbuch ===
+
+    public NumberDictionary getDictionary() { return dictionary; }
+
+    /** Anzahl unterschiedlicher Telefonnummern */
+    public int getNumberCount() { return dictionary.size(); }
+
+    /** Telefonnummer zu einer numberId */
+    public String getNumberById(int numberId) { return dictionary.getNumber(numberId); }
+
+    /**
+     * Sucht die numberId zu einer Telefonnummer.
+     *
+     * @return numberId, oder -1 wenn die Nummer nicht vorkommt
+     */
+    public int findNumberId(String number) {
+        return dictionary.find(number);
+    }
+
+    // === Objekt-Sichten (nur für UI/Export) ===
+
+    /**
+     * Erzeugt einen CallLogEntry für eine Zeile.
+     * Nur für Anzeige gedacht - Statistiken lesen direkt die Spalten.
+     */
+    public CallLogEntry entryAt(int row) {
+        int numberId = numberIds[row];
+        return new CallLogEntry(ids[row], dictionary.getNumber(numberId), dictionary.getName(numberId),
+                types[row], durations[row], timestamps[row]);
+    }
+
+    /**
+     * Liste über alle Zeilen. Einträge werden erst beim Zugriff erzeugt.
+     */
+    public List<CallLogEntry> asList() {
+        return new RowView(this, 0, size, null);
+    }
+
+    /**
+     * Liste über die Zeilen [start, end) ohne ausgeblendete Zeilen,
+     * z.B. für einen Datumsbereich: [countSince(to), countSince(from)).
+     * Es wird nichts kopiert, Einträge werden erst beim Zugriff erzeugt.
+     *
+     * @param hiddenBefore Präfix-Summe: hiddenBefore[row] = Anzahl ausgeblendeter
+     *                     Zeilen in [0, row), Länge size + 1. null = keine ausgeblendet
+     */
+    public List<CallLogEntry> viewOf(int start, int end, int[] hiddenBefore) {
+        return new RowView(this, start, end, hiddenBefore);
+    }
+
+    /**
+     * Liste über beliebige Zeilen in der angegebenen Reihenfolge (z.B.
+     * Suchergebnisse oder die Anrufe einer Nummer). Einträge werden erst beim
+     * Zugriff erzeugt.
+     *
+     * @param rows Zeilen-Positionen (wird nicht kopiert, danach nicht mehr ändern)
+     */
+    public List<CallLogEntry> viewOfRows(int[] rows) {
+        return new SelectedRowView(this, rows);
+    }
+
+    /**
+     * Anzahl Anrufe mit timestamp >= cutoff.
+     *
+     * Da die Zeilen nach Datum absteigend sortiert sind, ist das gleichzeitig
+     * der Index der ersten älteren Zeile. Binäre Suche, O(log n).
+     */
+    public int countSince(long cutoff) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] >= cutoff) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Unveränderliche Listen-Sicht auf einen Zeilen-Bereich eines Stores.
+     */
+    private static class RowView extends AbstractList<CallLogEntry> implements RandomAccess {
+        private final CallLogStore store;
+        private final int start;
+        private final int end;
+        private final int[] hiddenBefore;   // null = keine Zeile ausgeblendet
+        private final int count;
+
+        RowView(CallLogStore store, int start, int end, int[] hiddenBefore) {
+            this.store = store;
+            this.start = start;
+            this.end = end;
+            this.hiddenBefore = hiddenBefore;
+            this.count = hiddenBefore == null ? end - start
+                    : end - start - (hiddenBefore[end] - hiddenBefore[start]);
+        }
+
+        @Override
+        public CallLogEntry get(int index) {
+            if (index < 0 || index >= count) throw new IndexOutOfBoundsException("index " + index);
+            return store.entryAt(rowOf(index));
+        }
+
+        /**
+         * Zeile zum index-ten sichtbaren Eintrag.
+         * Sucht die erste Zeile, bis zu der (einschließlich) mehr sichtbare
+         * Zeilen liegen als vor start plus index - das ist immer eine
+         * sichtbare Zeile.
+         */
+        private int rowOf(int index) {
+            if (hiddenBefore == null) return start + index;
+            int target = start - hiddenBefore[start] + index;  // Sichtbare Zeilen vor der gesuchten
+            int low = start + index;
+            int high = end - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (mid + 1 - hiddenBefore[mid + 1] > target) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    /**
+     * Unveränderliche Listen-Sicht auf ausgewählte Zeilen eines Stores.
+     */
+    private static class SelectedRowView extends AbstractList<CallLogEntry> implements RandomAccess {
+        private final CallLogStore store;
+        private final int[] rows;
+
+        SelectedRowView(CallLogStore store, int[] rows) {
+            this.store = store;
+            this.rows = rows;
+        }
+
+        @Override
+        public CallLogEntry get(int index) {
+            return store.entryAt(rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+
+    // === Neue Stores aus bestehenden erzeugen ===
+
+    /**
+     * Gibt einen Store mit neu berechneter effectiveTypes-Spalte zurück.
+     * Alle anderen Spalten werden geteilt.
+     *
+     * Die Regeln werden vorher einmal pro Nummer ausgewertet - hier wird
+     * nur noch per numberId nachgeschlagen, ohne Strings anzufassen.
+     *
+     * @param forcedTypes Pro numberId: erzwungener Typ, oder -1 für keinen
+     */
+    public CallLogStore withForcedTypes(byte[] forcedTypes) {
+        boolean any = false;
+        for (int id = 0; id < dictionary.size(); id++) {
+            if (forcedTypes[id] >= 0) { any = true; break; }
+        }
+        if (!any) {
+            return effectiveTypes == types ? this
+                    : new CallLogStore(size, ids, timestamps, durations, types, numberIds, dictionary);
+        }
+
+        byte[] effective = new byte[size];
+        for (int row = 0; row < size; row++) {
+            byte forced = forcedTypes[numberIds[row]];
+            effective[row] = forced >= 0 ? forced : types[row];
+        }
+        return new CallLogStore(size, ids, timestamps, durations, types, numberIds, effective, dictionary);
+    }
+
+    /**
+     * Wie withForcedTypes(forcedTypes), wertet die Regeln aber nur für die
+     * ersten count Zeilen aus. Die übrigen Zeilen sind die von previous -
+     * bei gleichen Regeln werden deren effektive Typen nur kopiert.
+     *
+     * @param previous Bisheriger Store mit angewendeten Regeln; dieser Store
+     *                 besteht aus count neuen Zeilen gefolgt von previous
+     */
+    public CallLogStore withForcedTypes(byte[] forcedTypes, CallLogStore previous, int count) {
+        boolean any = previous.effectiveTypes != previous.types;
+        for (int row = 0; row < count && !any; row++) {
+            if (forcedTypes[numberIds[row]] >= 0) any = true;
+        }
+        if (!any) {
+            return effectiveTypes == types ? this
+                    : new CallLogStore(size, ids, timestamps, durations, types, numberIds, dictionary);
+        }
+
+        byte[] effective = new byte[size];
+        for (int row = 0; row < count; row++) {
+            byte forced = forcedTypes[numberIds[row]];
+            effective[row] = forced >= 0 ? forced : types[row];
+        }
+        System.arraycopy(previous.effectiveTypes, 0, effective, count, previous.size);
+        return new CallLogStore(size, ids, timestamps, durations, types, numberIds, effective, dictionary);
+    }
+
+    /**
+     * Hängt ältere Zeilen hinter neuere: ergebnis = newer + this.
+     *
+     * newer muss mit new Builder(this) erzeugt worden sein, damit die
+     * numberIds zum selben (erweiterten) NumberDictionary gehören.
+     * Das Ergebnis verwendet das Wörterbuch von newer (enthält neuere Namen).
+     * Ist die Datums-Reihenfolge danach verletzt (z.B. nachträglich
+     * importierte alte Anrufe), wird neu sortiert.
+     */
+    public CallLogStore prependedWith(CallLogStore newer) {
+        int total = newer.size + size;
+        long[] newIds = new long[total];
+        long[] newTimestamps = new long[total];
+        int[] newDurations = new int[total];
+        byte[] newTypes = new byte[total];
+        int[] newNumberIds = new int[total];
+
+        System.arraycopy(newer.ids, 0, newIds, 0, newer.size);
+        System.arraycopy(ids, 0, newIds, newer.size, size);
+        System.arraycopy(newer.timestamps, 0, newTimestamps, 0, newer.size);
+        System.arraycopy(timestamps, 0, newTimestamps, newer.size, size);
+        System.arraycopy(newer.durations, 0, newDurations, 0, newer.size);
+        System.arraycopy(durations, 0, newDurations, newer.size, size);
+        System.arraycopy(newer.types, 0, newTypes, 0, newer.size);
+        System.arraycopy(types, 0, newTypes, newer.size, size);
+        System.arraycopy(newer.numberIds, 0, newNumberIds, 0, newer.size);
+        System.arraycopy(numberIds, 0, newNumberIds, newer.size, size);
+
+        CallLogStore merged = new CallLogStore(total, newIds, newTimestamps, newDurations, newTypes,
+                newNumberIds, newer.dictionary);
+
+        boolean sorted = newer.size == 0 || size == 0
+                || newer.timestamps[newer.size - 1] >= timestamps[0];
+        return sorted ? merged : merged.sortedByDateDesc();
+    }
+
+    /**
+     * Gibt einen nach Datum (neueste zuerst) sortierten Store zurück.
+     * Selten nötig, daher einfache Sortierung über eine Index-Permutation.
+     */
+    private CallLogStore sortedByDateDesc() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(timestamps[b], timestamps[a]));
+
+        long[] sIds = new long[size];
+        long[] sTimestamps = new long[size];
+        int[] sDurations = new int[size];
+        byte[] sTypes = new byte[size];
+        int[] sNumberIds = new int[size];
+        for (int i = 0; i < size; i++) {
+            int row = order[i];
+            sIds[i] = ids[row];
+            sTimestamps[i] = timestamps[row];
+            sDurations[i] = durations[row];
+            sTypes[i] = types[row];
+            sNumberIds[i] = numberIds[row];
+        }
+        return new CallLogStore(size, sIds, sTimestamps, sDurations, sTypes, sNumberIds, dictionary);
+    }
+
+    /**
+     * Baut einen CallLogStore Zeile für Zeile auf (beim Durchlaufen des Cursors).
+     *
+     * Zeilen müssen in der gewünschten Reihenfolge (neueste zuerst) hinzugefügt werden.
+     * Nicht thread-safe - gehört dem Loader-Thread.
+     */
+    public static class Builder {
+        private int size = 0;
+        private long[] ids = new long[64];
+        private long[] timestamps = new long[64];
+        private int[] durations = new int[64];
+        private byte[] types = new byte[64];
+        private int[] numberIds = new int[64];
+
+        private final NumberDictionary.Builder dictionary;
+
+        /**
+         * @param base Store dessen NumberDictionary weitergeführt (kopiert) wird,
+         *             damit die numberIds zusammenpassen. null = neues Wörterbuch.
+         */
+        public Builder(CallLogStore base) {
+            dictionary = new NumberDictionary.Builder(base != null ? base.dictionary : null);
+        }
+
+        /** Anzahl bisher hinzugefügter Zeilen */
+        public int size() {
+            return size;
+        }
+
+        public long getId(int row) { return ids[row]; }
+        public long getTimestamp(int row) { return timestamps[row]; }
+
+        /**
+         * Fügt einen Anruf hinzu.
+         *
+         * @param number Telefonnummer (null wird als "" gespeichert)
+         * @param name Kontaktname (null/"" = unbekannt). Pro Nummer wird nur
+         *             der neueste nicht-leere Name behalten.
+         */
+        public void add(long id, String number, String name, int type, long duration, long timestamp) {
+            if (size == ids.length) grow();
+            ids[size] = id;
+            timestamps[size] = timestamp;
+            durations[size] = (int) Math.min(Integer.MAX_VALUE, Math.max(0, duration));
+            types[size] = (byte) type;
+            numberIds[size] = dictionary.add(number != null ? number : "", name, timestamp);
+            size++;
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            types = Arrays.copyOf(types, capacity);
+            numberIds = Arrays.copyOf(numberIds, capacity);
+        }
+
+        /**
+         * Erzeugt einen unveränderlichen Store mit den bisher hinzugefügten
+         * Zeilen. Der Builder kann danach weiter befüllt werden.
+         *
+         * Die Spalten werden geteilt statt kopiert: Der Builder hängt nur
+         * hinten an und schreibt nie in Zeilen < size. Nur das (kleine)
+         * Wörterbuch wird kopiert.
+         */
+        public CallLogStore buildPartial() {
+            return new CallLogStore(size, ids, timestamps, durations, types, numberIds,
+                    dictionary.buildPartial());
+        }
+
+        /**
+         * Erzeugt den unveränderlichen Store.
+         * Der Builder darf danach nicht weiterverwendet werden.
+         */
+        public CallLogStore build() {
+            return new CallLogStore(size, ids, timestamps, durations, types, numberIds,
+                    dictionary.build());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.Arrays;
+
+/**
+ * Zusammensetzbarer Filter für Anrufe (Typ, Dauer, Kontaktname),
+ * verknüpfbar mit and()/or()/not().
+ *
+ * Beispiel - verpasste oder kurze Anrufe unbekannter Nummern:
+ *   CallQuery.and(
+ *       CallQuery.or(CallQuery.type(CallLogEntry.TYPE_MISSED),
+ *                    CallQuery.durationBetween(0, 10)),
+ *       CallQuery.not(CallQuery.hasContactName()))
+ *
+ * Ausgewertet wird nicht pro Zeile über eine Kette von Prädikat-Objekten,
+ * sondern pro Blatt einmal über eine Spalte des CallLogStore: Jedes Blatt
+ * füllt eine Bitmap über den Zeilen-Bereich in einer engen Schleife über ein
+ * primitives Array (Namen vorher einmal pro numberId aufgelöst).
+ * AND/OR/NOT sind dann wortweise Operationen auf den Bitmaps (64 Zeilen
+ * pro Operation).
+ *
+ * Die Blacklist ist kein Teil der Abfrage - sie wird von select() immer
+ * zusätzlich angewendet. Unveränderlich und zwischen Threads teilbar.
+ */
+public final class CallQuery {
+
+    // === Knoten-Arten ===
+    private static final int KIND_ALL = 0;
+    private static final int KIND_TYPE = 1;
+    private static final int KIND_DURATION = 2;
+    private static final int KIND_HAS_NAME = 3;
+    private static final int KIND_AND = 4;
+    private static final int KIND_OR = 5;
+    private static final int KIND_NOT = 6;
+
+    /** Alle Anrufe (kein Filter) */
+    public static final CallQuery ALL = new CallQuery(KIND_ALL, 0, 0, 0, null);
+
+    private final int kind;
+    private final int typeMask;          // KIND_TYPE: Bit pro Anruftyp
+    private final long min;              // KIND_DURATION: Sekunden (inklusiv)
+    private final long max;              // (exklusiv)
+    private final CallQuery[] children;  // KIND_AND/OR/NOT
+
+    private CallQuery(int kind, int typeMask, long min, long max, CallQuery[] children) {
+        this.kind = kind;
+        this.typeMask = typeMask;
+        this.min = min;
+        this.max = max;
+        this.children = children;
+    }
+
+    // === Bausteine ===
+
+    /**
+     * Anrufe mit einem der angegebenen effektiven Typen (nach Typ-Regeln).
+     *
+     * @param types CallLogEntry.TYPE_* Konstanten
+     */
+    public static CallQuery type(int... types) {
+        int mask = 0;
+        for (int type : types) {
+            if (type >= 0 && type < 32) mask |= 1 << type;
+        }
+        return new CallQuery(KIND_TYPE, mask, 0, 0, null);
+    }
+
+    /**
+     * Anrufe mit minSeconds <= Dauer < maxSeconds.
+     */
+    public static CallQuery durationBetween(long minSeconds, long maxSeconds) {
+        return new CallQuery(KIND_DURATION, 0, minSeconds, maxSeconds, null);
+    }
+
+    /**
+     * Anrufe von Nummern mit bekanntem Kontaktnamen.
+     */
+    public static CallQuery hasContactName() {
+        return new CallQuery(KIND_HAS_NAME, 0, 0, 0, null);
+    }
+
+    /** Alle Bedingungen müssen zutreffen (ohne Argumente: alle Anrufe) */
+    public static CallQuery and(CallQuery... queries) {
+        return queries.length == 0 ? ALL : new CallQuery(KIND_AND, 0, 0, 0, queries.clone());
+    }
+
+    /** Mindestens eine Bedingung muss zutreffen (ohne Argumente: keine Anrufe) */
+    public static CallQuery or(CallQuery... queries) {
+        return new CallQuery(KIND_OR, 0, 0, 0, queries.clone());
+    }
+
+    /** Bedingung darf nicht zutreffen */
+    public static CallQuery not(CallQuery query) {
+        return new CallQuery(KIND_NOT, 0, 0, 0, new CallQuery[] {query});
+    }
+
+    /** true wenn die Abfrage keine Anrufe ausschließt (nur ALL) */
+    public boolean isAll() {
+        return kind == KIND_ALL;
+    }
+
+    // === Auswertung ===
+
+    /**
+     * Zeilen aus [start, end), auf die die Abfrage zutrifft, ohne
+     * ausgeblendete Nummern.
+     *
+     * @param hiddenIds Pro numberId: durch Blacklist ausgeblendet
+     * @return Zeilen aufsteigend (= neueste zuerst)
+     */
+    public int[] select(CallLogStore store, int start, int end, boolean[] hiddenIds) {
+        int length = Math.max(0, end - start);
+        long[] bits = evaluate(store, start, length);
+
+        int[] rows = new int[length];
+        int count = 0;
+        for (int word = 0; word < bits.length; word++) {
+            long w = bits[word];
+            while (w != 0) {
+                int row = start + (word << 6) + Long.numberOfTrailingZeros(w);
+                w &= w - 1;  // Niedrigstes gesetztes Bit löschen
+                if (!hiddenIds[store.getNumberId(row)]) rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Bitmap über length Zeilen ab start: Bit i gesetzt = Zeile start + i trifft zu.
+     * Bits hinter length sind immer 0.
+     */
+    private long[] evaluate(CallLogStore store, int start, int length) {
+        long[] bits = new long[(length + 63) >>> 6];
+        switch (kind) {
+            case KIND_ALL:
+                setRange(bits, 0, length);
+                break;
+
+            case KIND_TYPE:
+                for (int i = 0; i < length; i++) {
+                    int type = store.getEffectiveType(start + i);
+                    if (type >= 0 && type < 32 && (typeMask & (1 << type)) != 0) {
+                        bits[i >>> 6] |= 1L << i;
+                    }
+                }
+                break;
+
+            case KIND_DURATION:
+                for (int i = 0; i < length; i++) {
+                    int duration = store.getDuration(start + i);
+                    if (duration >= min && duration < max) bits[i >>> 6] |= 1L << i;
+                }
+                break;
+
+            case KIND_HAS_NAME: {
+                // Einmal pro numberId entscheiden, dann nur noch nachschlagen
+                NumberDictionary dictionary = store.getDictionary();
+                boolean[] match = new boolean[dictionary.size()];
+                for (int id = 0; id < match.length; id++) {
+                    match[id] = !dictionary.getName(id).isEmpty();
+                }
+                for (int i = 0; i < length; i++) {
+                    if (match[store.getNumberId(start + i)]) bits[i >>> 6] |= 1L << i;
+                }
+                break;
+            }
+
+            case KIND_AND:
+                setRange(bits, 0, length);
+                for (CallQuery child : children) {
+                    long[] other = child.evaluate(store, start, length);
+                    for (int w = 0; w < bits.length; w++) bits[w] &= other[w];
+                }
+                break;
+
+            case KIND_OR:
+                for (CallQuery child : children) {
+                    long[] other = child.evaluate(store, start, length);
+                    for (int w = 0; w < bits.length; w++) bits[w] |= other[w];
+                }
+                break;
+
+            case KIND_NOT: {
+                long[] other = children[0].evaluate(store, start, length);
+                for (int w = 0; w < bits.length; w++) bits[w] = ~other[w];
+                clearTail(bits, length);
+                break;
+            }
+        }
+        return bits;
+    }
+
+    /** Setzt die Bits [from, to) */
+    private static void setRange(long[] bits, int from, int to) {
+        for (int i = from; i < to; ) {
+            int word = i >>> 6;
+            int bit = i & 63;
+            int n = Math.min(64 - bit, to - i);
+            bits[word] |= (n == 64 ? -1L : ((1L << n) - 1)) << bit;
+            i += n;
+        }
+    }
+
+    /** Löscht die Bits ab length im letzten Wort */
+    private static void clearTail(long[] bits, int length) {
+        int used = length & 63;
+        if (used != 0) bits[bits.length - 1] &= (1L << used) - 1;
+    }
+}
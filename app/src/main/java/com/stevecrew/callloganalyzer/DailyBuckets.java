@@ -0,0 +1,569 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Vorberechnete Tages-Summen über einen CallLogStore.
+ *
+ * Pro Kalendertag (lokale Zeit) werden beim Laden einmal gezählt:
+ * - Anzahl pro effektivem Anruftyp, Gesamtzahl und Gesamtdauer
+ * - Anzahl und Dauer pro Nummer (nur Nummern, die an dem Tag vorkommen)
+ * - Anzahl pro Stunde und effektivem Anruftyp (für die HeatmapCube)
+ *
+ * Wochentag pro Tag und Stunde pro Zeile werden dabei einmal bestimmt
+ * (Zeitumstellung berücksichtigt), damit später kein Calendar mehr nötig ist.
+ *
+ * Ausgeblendete Nummern (Blacklist) sind bereits herausgerechnet. Ändern
+ * sich Blacklist oder Typ-Regeln, werden die Buckets neu gebaut.
+ *
+ * Eine Statistik für einen Zeitraum summiert dann nur noch die vollständig
+ * enthaltenen Tage. Lediglich die Zeilen der angeschnittenen Randtage
+ * (z.B. "jetzt minus 7 Tage" beginnt mitten am Tag) werden einzeln gezählt.
+ * Die Typ-Kacheln kosten so O(Tage) statt O(Anrufe) - "Letztes Jahr" also
+ * höchstens 365 Buckets.
+ *
+ * Die Tage liegen wie die Zeilen absteigend (Tag 0 = neuester Tag). Da der
+ * Store nach Datum sortiert ist, belegt jeder Tag einen zusammenhängenden
+ * Zeilen-Bereich [rowStart, rowEnd).
+ *
+ * Unveränderlich, wird auf dem Loader-Thread gebaut. Bei sehr großen
+ * Anrufprotokollen (importierte Archive) werden die Tage auf dem
+ * ForkJoinPool in Teilbereichen parallel gezählt. Kommen nur neue Anrufe
+ * dazu, werden lediglich sie und der bisher neueste Tag neu gezählt
+ * (withInsertedRows()).
+ */
+public class DailyBuckets {
+
+    /**
+     * Ab dieser Anzahl Zeilen wird parallel gezählt (ForkJoinPool).
+     * Darunter lohnt sich das Aufteilen nicht.
+     */
+    private static final int PARALLEL_THRESHOLD = 50_000;
+
+    /** Zeilen pro Teilaufgabe beim parallelen Zählen (ungefähr, ganze Tage) */
+    private static final int PARALLEL_CHUNK_ROWS = 8_192;
+
+    private static final long HOUR_MS = 60L * 60 * 1000;
+
+    /** Buckets für den leeren Store */
+    public static final DailyBuckets EMPTY = build(CallLogStore.EMPTY, new boolean[0]);
+
+    private final CallLogStore store;
+    private final boolean[] hiddenIds;
+    private final int days;
+
+    // === Pro Tag ===
+    private final long[] dayStart;       // Mitternacht (lokale Zeit) in ms
+    private final int[] rowStart;        // Erste Zeile des Tages im Store
+    private final int[] rowEnd;          // Ende (exklusiv)
+    private final int[] incoming;
+    private final int[] outgoing;
+    private final int[] missed;
+    private final int[] rejected;
+    private final int[] calls;           // Alle sichtbaren Anrufe (alle Typen)
+    private final long[] duration;       // Gesamtdauer in Sekunden
+    private final byte[] weekdays;       // 0 = Montag ... 6 = Sonntag
+    // Anrufe pro Tag, Stunde und Typ: [(day * HOURS + hour) * TYPES + typeIndex]
+    private final int[] hourCounts;
+
+    // === Pro Zeile ===
+    private final byte[] rowHours;       // Lokale Stunde (0-23) jeder Zeile
+
+    // === Pro Tag und Nummer (dünn besetzt) ===
+    // Einträge von Tag d: [numberOffset[d], numberOffset[d + 1])
+    private final int[] numberOffset;
+    private final int[] dayNumberIds;
+    private final int[] dayNumberCounts;
+    private final long[] dayNumberDurations;
+
+    private DailyBuckets(CallLogStore store, boolean[] hiddenIds, int days,
+                         long[] dayStart, int[] rowStart, int[] rowEnd,
+                         int[] incoming, int[] outgoing, int[] missed, int[] rejected,
+                         int[] calls, long[] duration, byte[] weekdays, int[] hourCounts,
+                         byte[] rowHours, int[] numberOffset,
+                         int[] dayNumberIds, int[] dayNumberCounts, long[] dayNumberDurations) {
+        this.store = store;
+        this.hiddenIds = hiddenIds;
+        this.days = days;
+        this.dayStart = dayStart;
+        this.rowStart = rowStart;
+        this.rowEnd = rowEnd;
+        this.incoming = incoming;
+        this.outgoing = outgoing;
+        this.missed = missed;
+        this.rejected = rejected;
+        this.calls = calls;
+        this.duration = duration;
+        this.weekdays = weekdays;
+        this.hourCounts = hourCounts;
+        this.rowHours = rowHours;
+        this.numberOffset = numberOffset;
+        this.dayNumberIds = dayNumberIds;
+        this.dayNumberCounts = dayNumberCounts;
+        this.dayNumberDurations = dayNumberDurations;
+    }
+
+    /**
+     * Baut die Buckets in einem Durchlauf über alle Zeilen.
+     *
+     * @param store Alle geladenen Anrufe (nach Datum absteigend)
+     * @param hiddenIds Pro numberId: durch Blacklist ausgeblendet
+     */
+    public static DailyBuckets build(CallLogStore store, boolean[] hiddenIds) {
+        return build(store, hiddenIds, store.size(), store.size() >= PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Wie build(store, hiddenIds), aber parallel oder sequenziell unabhängig
+     * von der Größe (für Tests: beide Wege müssen dasselbe ergeben).
+     */
+    static DailyBuckets build(CallLogStore store, boolean[] hiddenIds, boolean parallel) {
+        return build(store, hiddenIds, store.size(), parallel);
+    }
+
+    /**
+     * Baut die Buckets für die Zeilen [0, size) - die übrigen Zeilen
+     * gehören zu keinem Tag (siehe withInsertedRows()).
+     */
+    private static DailyBuckets build(CallLogStore store, boolean[] hiddenIds, int size,
+                                      boolean parallel) {
+        // Erst Tagesgrenzen bestimmen - Calendar nur einmal pro Tag, nicht pro Zeile
+        long[] starts = new long[16];
+        int[] firstRows = new int[16];
+        byte[] dayOfWeek = new byte[16];
+        int days = 0;
+        long currentStart = Long.MAX_VALUE;
+        Calendar cal = Calendar.getInstance();
+        for (int row = 0; row < size; row++) {
+            long timestamp = store.getTimestamp(row);
+            if (timestamp >= currentStart) continue;
+            currentStart = startOfDay(cal, timestamp);
+            if (days == starts.length) {
+                starts = Arrays.copyOf(starts, days * 2);
+                firstRows = Arrays.copyOf(firstRows, days * 2);
+                dayOfWeek = Arrays.copyOf(dayOfWeek, days * 2);
+            }
+            starts[days] = currentStart;
+            firstRows[days] = row;
+            // Calendar: SUNDAY = 1 ... SATURDAY = 7 → Montag = 0
+            dayOfWeek[days] = (byte) ((cal.get(Calendar.DAY_OF_WEEK) + 5) % 7);
+            days++;
+        }
+
+        long[] dayStart = Arrays.copyOf(starts, days);
+        int[] rowStart = Arrays.copyOf(firstRows, days);
+        int[] rowEnd = new int[days];
+        for (int day = 0; day < days; day++) {
+            rowEnd[day] = day + 1 < days ? rowStart[day + 1] : size;
+        }
+
+        Aggregation aggregation = new Aggregation(store, hiddenIds, dayStart, rowStart, rowEnd, size);
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(new DayRangeTask(aggregation, 0, days));
+        } else {
+            aggregation.aggregate(0, days, newSlots(store), Calendar.getInstance());
+        }
+
+        // Nummern-Einträge lückenlos zusammenschieben (Tag d lag ab rowStart[d])
+        int[] numberOffset = new int[days + 1];
+        int entries = 0;
+        for (int day = 0; day < days; day++) {
+            numberOffset[day] = entries;
+            int count = aggregation.dayEntries[day];
+            System.arraycopy(aggregation.ids, rowStart[day], aggregation.ids, entries, count);
+            System.arraycopy(aggregation.counts, rowStart[day], aggregation.counts, entries, count);
+            System.arraycopy(aggregation.durations, rowStart[day], aggregation.durations, entries, count);
+            entries += count;
+        }
+        numberOffset[days] = entries;
+
+        return new DailyBuckets(store, hiddenIds, days, dayStart, rowStart, rowEnd,
+                aggregation.incoming, aggregation.outgoing, aggregation.missed,
+                aggregation.rejected, aggregation.calls, aggregation.duration,
+                Arrays.copyOf(dayOfWeek, days), aggregation.hourCounts, aggregation.rowHours,
+                numberOffset,
+                Arrays.copyOf(aggregation.ids, entries), Arrays.copyOf(aggregation.counts, entries),
+                Arrays.copyOf(aggregation.durations, entries));
+    }
+
+    /**
+     * Schreibt die Buckets um neu eingefügte Anrufe fort.
+     *
+     * Die neuen Zeilen sind mindestens so neu wie der bisher neueste Tag
+     * (Tag 0), gehören also zu ihm oder zu neueren Tagen. Gezählt werden nur
+     * die neuen Zeilen plus die Zeilen von Tag 0, alle älteren Tage werden
+     * übernommen (Zeilen-Positionen um count verschoben). Das Ergebnis ist
+     * identisch zu build(newStore, hiddenIds).
+     *
+     * Voraussetzung: newStore = count neue Zeilen gefolgt vom bisherigen
+     * Store, Blacklist und Regeln unverändert.
+     *
+     * @param hiddenIds Blacklist-Maske für newStore (Index = numberId)
+     */
+    public DailyBuckets withInsertedRows(CallLogStore newStore, boolean[] hiddenIds, int count) {
+        if (days == 0) return build(newStore, hiddenIds);
+
+        int headSize = count + rowEnd[0];
+        DailyBuckets head = build(newStore, hiddenIds, headSize, headSize >= PARALLEL_THRESHOLD);
+        int kept = days - 1;                       // Übernommen: bisherige Tage [1, days)
+        int total = head.days + kept;
+        int perDay = HeatmapCube.HOURS * HeatmapCube.TYPES;
+
+        // === Pro Tag: erst die neu gezählten, dann die übernommenen ===
+        long[] newDayStart = concat(head.dayStart, head.days, dayStart, 1, kept);
+        int[] newIncoming = concat(head.incoming, head.days, incoming, 1, kept);
+        int[] newOutgoing = concat(head.outgoing, head.days, outgoing, 1, kept);
+        int[] newMissed = concat(head.missed, head.days, missed, 1, kept);
+        int[] newRejected = concat(head.rejected, head.days, rejected, 1, kept);
+        int[] newCalls = concat(head.calls, head.days, calls, 1, kept);
+        long[] newDuration = concat(head.duration, head.days, duration, 1, kept);
+        byte[] newWeekdays = Arrays.copyOf(head.weekdays, total);
+        System.arraycopy(weekdays, 1, newWeekdays, head.days, kept);
+        int[] newHourCounts = Arrays.copyOf(head.hourCounts, total * perDay);
+        System.arraycopy(hourCounts, perDay, newHourCounts, head.days * perDay, kept * perDay);
+
+        int[] newRowStart = Arrays.copyOf(head.rowStart, total);
+        int[] newRowEnd = Arrays.copyOf(head.rowEnd, total);
+        for (int day = 1; day < days; day++) {
+            newRowStart[head.days + day - 1] = rowStart[day] + count;
+            newRowEnd[head.days + day - 1] = rowEnd[day] + count;
+        }
+
+        // === Pro Zeile ===
+        byte[] newRowHours = new byte[newStore.size()];
+        int headRows = head.rowHours.length;
+        System.arraycopy(head.rowHours, 0, newRowHours, 0, headRows);
+        System.arraycopy(rowHours, headRows - count, newRowHours, headRows, newStore.size() - headRows);
+
+        // === Pro Tag und Nummer ===
+        int headEntries = head.numberOffset[head.days];
+        int keptFrom = numberOffset[1];
+        int keptEntries = numberOffset[days] - keptFrom;
+        int[] newNumberOffset = Arrays.copyOf(head.numberOffset, total + 1);
+        for (int day = 1; day <= days; day++) {
+            newNumberOffset[head.days + day - 1] = numberOffset[day] - keptFrom + headEntries;
+        }
+        int[] newIds = concat(head.dayNumberIds, headEntries, dayNumberIds, keptFrom, keptEntries);
+        int[] newCounts = concat(head.dayNumberCounts, headEntries, dayNumberCounts, keptFrom, keptEntries);
+        long[] newDurations = concat(head.dayNumberDurations, headEntries,
+                dayNumberDurations, keptFrom, keptEntries);
+
+        return new DailyBuckets(newStore, hiddenIds, total, newDayStart, newRowStart, newRowEnd,
+                newIncoming, newOutgoing, newMissed, newRejected, newCalls, newDuration,
+                newWeekdays, newHourCounts, newRowHours, newNumberOffset,
+                newIds, newCounts, newDurations);
+    }
+
+    /** first[0, firstLength) gefolgt von second[from, from + length) */
+    private static int[] concat(int[] first, int firstLength, int[] second, int from, int length) {
+        int[] result = Arrays.copyOf(first, firstLength + length);
+        System.arraycopy(second, from, result, firstLength, length);
+        return result;
+    }
+
+    private static long[] concat(long[] first, int firstLength, long[] second, int from, int length) {
+        long[] result = Arrays.copyOf(first, firstLength + length);
+        System.arraycopy(second, from, result, firstLength, length);
+        return result;
+    }
+
+    /** numberId → Position im aktuellen Tag, -1 = an diesem Tag noch nicht gesehen */
+    private static int[] newSlots(CallLogStore store) {
+        int[] slot = new int[store.getNumberCount()];
+        Arrays.fill(slot, -1);
+        return slot;
+    }
+
+    /**
+     * Zwischenergebnisse beim Bauen der Buckets.
+     *
+     * Jeder Tag schreibt nur in seine eigenen Felder: die Tages-Zähler an
+     * Index day, die Stunden seiner Zeilen und die Nummern-Einträge ab
+     * Position rowStart[day] (ein Tag hat höchstens so viele
+     * unterschiedliche Nummern wie Zeilen). Daher
+     * können Tag-Bereiche ohne Synchronisation parallel gezählt werden.
+     */
+    private static final class Aggregation {
+        final CallLogStore store;
+        final boolean[] hiddenIds;
+        final long[] dayStart;
+        final int[] rowStart;
+        final int[] rowEnd;
+
+        final int[] incoming;
+        final int[] outgoing;
+        final int[] missed;
+        final int[] rejected;
+        final int[] calls;
+        final long[] duration;
+        final int[] hourCounts;
+        final byte[] rowHours;
+
+        // Nummern-Einträge von Tag d: [rowStart[d], rowStart[d] + dayEntries[d])
+        final int[] dayEntries;
+        final int[] ids;
+        final int[] counts;
+        final long[] durations;
+
+        Aggregation(CallLogStore store, boolean[] hiddenIds, long[] dayStart,
+                    int[] rowStart, int[] rowEnd, int size) {
+            int days = rowStart.length;
+            this.store = store;
+            this.hiddenIds = hiddenIds;
+            this.dayStart = dayStart;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            incoming = new int[days];
+            outgoing = new int[days];
+            missed = new int[days];
+            rejected = new int[days];
+            calls = new int[days];
+            duration = new long[days];
+            hourCounts = new int[days * HeatmapCube.HOURS * HeatmapCube.TYPES];
+            rowHours = new byte[size];
+            dayEntries = new int[days];
+            ids = new int[size];
+            counts = new int[size];
+            durations = new long[size];
+        }
+
+        /**
+         * Zählt die Tage [firstDay, endDay).
+         *
+         * @param slot Arbeits-Array aus newSlots(), alle Werte -1 (auch danach)
+         * @param cal Eigener Calendar (nicht zwischen Threads teilen)
+         */
+        void aggregate(int firstDay, int endDay, int[] slot, Calendar cal) {
+            for (int day = firstDay; day < endDay; day++) {
+                int base = rowStart[day];
+                int entries = 0;
+                boolean regular = hasRegularHours(cal, dayStart[day]);
+
+                for (int row = rowStart[day]; row < rowEnd[day]; row++) {
+                    long timestamp = store.getTimestamp(row);
+                    int hour;
+                    if (regular) {
+                        hour = (int) ((timestamp - dayStart[day]) / HOUR_MS);
+                    } else {
+                        cal.setTimeInMillis(timestamp);
+                        hour = cal.get(Calendar.HOUR_OF_DAY);
+                    }
+                    rowHours[row] = (byte) hour;
+
+                    int id = store.getNumberId(row);
+                    if (hiddenIds[id]) continue;
+
+                    int callDuration = store.getDuration(row);
+                    int type = store.getEffectiveType(row);
+                    switch (type) {
+                        case CallLogEntry.TYPE_INCOMING: incoming[day]++; break;
+                        case CallLogEntry.TYPE_OUTGOING: outgoing[day]++; break;
+                        case CallLogEntry.TYPE_MISSED: missed[day]++; break;
+                        case CallLogEntry.TYPE_REJECTED: rejected[day]++; break;
+                    }
+                    int typeIndex = HeatmapCube.typeIndex(type);
+                    if (typeIndex >= 0) {
+                        hourCounts[(day * HeatmapCube.HOURS + hour) * HeatmapCube.TYPES + typeIndex]++;
+                    }
+                    calls[day]++;
+                    duration[day] += callDuration;
+
+                    if (slot[id] < 0) {
+                        slot[id] = base + entries;
+                        ids[base + entries++] = id;
+                    }
+                    counts[slot[id]]++;
+                    durations[slot[id]] += callDuration;
+                }
+                dayEntries[day] = entries;
+
+                // Slots für den nächsten Tag zurücksetzen
+                for (int i = base; i < base + entries; i++) {
+                    slot[ids[i]] = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Zählt einen Tag-Bereich auf dem ForkJoinPool: Bereiche mit mehr als
+     * PARALLEL_CHUNK_ROWS Zeilen werden halbiert. Jeder Teil hat sein
+     * eigenes Slot-Array, die Ergebnisse landen in getrennten Feldern von
+     * Aggregation - das Zusammenführen ist damit nur das Zusammenschieben
+     * in build(). Das Ergebnis ist identisch zum sequentiellen Durchlauf.
+     */
+    private static final class DayRangeTask extends RecursiveAction {
+        private final Aggregation aggregation;
+        private final int firstDay;
+        private final int endDay;
+
+        DayRangeTask(Aggregation aggregation, int firstDay, int endDay) {
+            this.aggregation = aggregation;
+            this.firstDay = firstDay;
+            this.endDay = endDay;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = aggregation.rowEnd[endDay - 1] - aggregation.rowStart[firstDay];
+            if (endDay - firstDay <= 1 || rows <= PARALLEL_CHUNK_ROWS) {
+                aggregation.aggregate(firstDay, endDay, newSlots(aggregation.store),
+                        Calendar.getInstance());
+                return;
+            }
+            int middle = (firstDay + endDay) >>> 1;
+            invokeAll(new DayRangeTask(aggregation, firstDay, middle),
+                      new DayRangeTask(aggregation, middle, endDay));
+        }
+    }
+
+    /** Mitternacht (lokale Zeit) des Tages, in dem timestamp liegt */
+    private static long startOfDay(Calendar cal, long timestamp) {
+        cal.setTimeInMillis(timestamp);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal.getTimeInMillis();
+    }
+
+    /**
+     * true wenn der Tag genau 24 Stunden hat - dann ergibt sich die Stunde
+     * jeder Zeile durch Rechnen ab Mitternacht. Nur an Tagen mit
+     * Zeitumstellung (23 oder 25 Stunden) wird Calendar pro Zeile gefragt.
+     */
+    private static boolean hasRegularHours(Calendar cal, long dayStart) {
+        cal.setTimeInMillis(dayStart);
+        cal.add(Calendar.DAY_OF_MONTH, 1);
+        return cal.getTimeInMillis() - dayStart == HeatmapCube.HOURS * HOUR_MS;
+    }
+
+    /** Anzahl Tage mit mindestens einem Anruf */
+    int getDayCount() {
+        return days;
+    }
+
+    /**
+     * Statistik für die Zeilen [start, end) des Stores.
+     *
+     * Vollständig enthaltene Tage kommen aus den Buckets, nur die Zeilen
+     * angeschnittener Tage am Rand werden einzeln gezählt.
+     */
+    public StatsSnapshot summarizeRows(int start, int end) {
+        StatsSnapshot.Builder builder = new StatsSnapshot.Builder(store);
+
+        // Vollständige Tage: [firstDay, endDay) mit rowStart >= start und rowEnd <= end.
+        // rowStart und rowEnd steigen mit dem Tag-Index, daher binäre Suche.
+        int firstDay = firstAtLeast(rowStart, start);
+        int endDay = firstAtLeast(rowEnd, end + 1);
+
+        if (firstDay >= endDay) {
+            // Kein Tag vollständig enthalten (z.B. nur ein Teil von heute)
+            builder.addRows(start, end, hiddenIds);
+            return builder.build();
+        }
+
+        // Angeschnittene Randtage zeilenweise
+        builder.addRows(start, rowStart[firstDay], hiddenIds);
+        builder.addRows(rowEnd[endDay - 1], end, hiddenIds);
+
+        for (int day = firstDay; day < endDay; day++) {
+            builder.addTypeCount(CallLogEntry.TYPE_INCOMING, incoming[day]);
+            builder.addTypeCount(CallLogEntry.TYPE_OUTGOING, outgoing[day]);
+            builder.addTypeCount(CallLogEntry.TYPE_MISSED, missed[day]);
+            builder.addTypeCount(CallLogEntry.TYPE_REJECTED, rejected[day]);
+            builder.addTotals(calls[day], duration[day]);
+        }
+
+        // Nummern der vollständigen Tage liegen direkt hintereinander
+        for (int i = numberOffset[firstDay]; i < numberOffset[endDay]; i++) {
+            builder.addNumber(dayNumberIds[i], dayNumberCounts[i], dayNumberDurations[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Heatmap (Wochentag × Stunde × Typ) für die Zeilen [start, end).
+     *
+     * Wie summarizeRows(): vollständige Tage kommen aus den Stunden-Summen
+     * (O(Tage × 24)), nur Randtage werden zeilenweise gezählt.
+     */
+    public HeatmapCube heatmapRows(int start, int end) {
+        int[] cells = new int[HeatmapCube.WEEKDAYS * HeatmapCube.HOURS * HeatmapCube.TYPES];
+        int firstDay = firstAtLeast(rowStart, start);
+        int endDay = firstAtLeast(rowEnd, end + 1);
+
+        if (firstDay >= endDay) {
+            addRowsToHeatmap(cells, start, end);
+            return new HeatmapCube(cells);
+        }
+
+        addRowsToHeatmap(cells, start, rowStart[firstDay]);
+        addRowsToHeatmap(cells, rowEnd[endDay - 1], end);
+
+        int perDay = HeatmapCube.HOURS * HeatmapCube.TYPES;
+        for (int day = firstDay; day < endDay; day++) {
+            // Zellen eines Wochentags liegen wie die Stunden-Summen eines Tages am Stück
+            int target = HeatmapCube.cell(weekdays[day], 0, 0);
+            int source = day * perDay;
+            for (int i = 0; i < perDay; i++) {
+                cells[target + i] += hourCounts[source + i];
+            }
+        }
+        return new HeatmapCube(cells);
+    }
+
+    /**
+     * Heatmap für ausgewählte Zeilen (z.B. aus CallQuery.select()).
+     *
+     * @param rows Zeilen aufsteigend
+     */
+    public HeatmapCube heatmapOfRows(int[] rows) {
+        int[] cells = new int[HeatmapCube.WEEKDAYS * HeatmapCube.HOURS * HeatmapCube.TYPES];
+        int day = 0;
+        for (int row : rows) {
+            while (row >= rowEnd[day]) day++;
+            if (hiddenIds[store.getNumberId(row)]) continue;
+            int typeIndex = HeatmapCube.typeIndex(store.getEffectiveType(row));
+            if (typeIndex < 0) continue;
+            cells[HeatmapCube.cell(weekdays[day], rowHours[row], typeIndex)]++;
+        }
+        return new HeatmapCube(cells);
+    }
+
+    /**
+     * Zählt die Zeilen [start, end) einzeln in die Heatmap-Zellen
+     * (ohne ausgeblendete Nummern). Stunde und Wochentag kommen aus den
+     * beim Bauen bestimmten Werten.
+     */
+    void addRowsToHeatmap(int[] cells, int start, int end) {
+        if (start >= end) return;
+        int day = firstAtLeast(rowEnd, start + 1);  // Tag, der start enthält
+        for (int row = start; row < end; row++) {
+            while (row >= rowEnd[day]) day++;
+            int id = store.getNumberId(row);
+            if (hiddenIds[id]) continue;
+            int typeIndex = HeatmapCube.typeIndex(store.getEffectiveType(row));
+            if (typeIndex < 0) continue;
+            cells[HeatmapCube.cell(weekdays[day], rowHours[row], typeIndex)]++;
+        }
+    }
+
+    /** Erster Index mit values[i] >= key (values aufsteigend sortiert) */
+    private int firstAtLeast(int[] values, int key) {
+        int low = 0;
+        int high = days;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
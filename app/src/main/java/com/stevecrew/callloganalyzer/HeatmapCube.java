@@ -0,0 +1,96 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.Arrays;
+
+/**
+ * Anrufe nach Wochentag × Stunde × effektivem Anruftyp (7 × 24 × 4 Zellen).
+ *
+ * Zeigt, wann sich Anrufe häufen (z.B. für Personalplanung). Wird aus den
+ * Tages-Summen zusammengesetzt (DailyBuckets.heatmapRows()) - Wochentag
+ * und Stunde jeder Zeile werden einmal beim Laden bestimmt, nicht beim
+ * Anzeigen über Calendar-Objekte.
+ *
+ * Wochentag 0 = Montag ... 6 = Sonntag, Stunde = lokale Uhrzeit (auch an
+ * Tagen mit Zeitumstellung korrekt).
+ *
+ * Unveränderlich.
+ */
+public class HeatmapCube {
+
+    public static final int WEEKDAYS = 7;
+    public static final int HOURS = 24;
+    /** Eingehend, Ausgehend, Verpasst, Abgelehnt (siehe typeIndex()) */
+    public static final int TYPES = 4;
+    /** Für getCount()/getMax(): alle Typen zusammen */
+    public static final int ALL_TYPES = -1;
+
+    /** Leere Heatmap */
+    public static final HeatmapCube EMPTY = new HeatmapCube(new int[WEEKDAYS * HOURS * TYPES]);
+
+    // Index = cell(weekday, hour, typeIndex)
+    private final int[] cells;
+
+    HeatmapCube(int[] cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * Index des Anruftyps in der Heatmap.
+     *
+     * @return 0-3 für Eingehend/Ausgehend/Verpasst/Abgelehnt, -1 für andere Typen
+     *         (z.B. Voicemail - zählen wie bei den Kacheln nicht mit)
+     */
+    public static int typeIndex(int type) {
+        switch (type) {
+            case CallLogEntry.TYPE_INCOMING: return 0;
+            case CallLogEntry.TYPE_OUTGOING: return 1;
+            case CallLogEntry.TYPE_MISSED: return 2;
+            case CallLogEntry.TYPE_REJECTED: return 3;
+            default: return -1;
+        }
+    }
+
+    /** Position einer Zelle im flachen Array */
+    static int cell(int weekday, int hour, int typeIndex) {
+        return (weekday * HOURS + hour) * TYPES + typeIndex;
+    }
+
+    /**
+     * Anzahl Anrufe in einer Zelle.
+     *
+     * @param weekday 0 = Montag ... 6 = Sonntag
+     * @param hour 0-23
+     * @param typeIndex Index aus typeIndex(), oder ALL_TYPES
+     */
+    public int getCount(int weekday, int hour, int typeIndex) {
+        if (typeIndex != ALL_TYPES) return cells[cell(weekday, hour, typeIndex)];
+        int sum = 0;
+        int base = cell(weekday, hour, 0);
+        for (int t = 0; t < TYPES; t++) sum += cells[base + t];
+        return sum;
+    }
+
+    /** Größter Zellwert (für die Farbskala), 0 wenn leer */
+    public int getMax(int typeIndex) {
+        int max = 0;
+        for (int weekday = 0; weekday < WEEKDAYS; weekday++) {
+            for (int hour = 0; hour < HOURS; hour++) {
+                max = Math.max(max, getCount(weekday, hour, typeIndex));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Schreibt die Heatmap um neu eingefügte Anrufe fort (wie
+     * StatsSnapshot.withInsertedRows()).
+     *
+     * @param buckets Tages-Summen des neuen Stores (enthalten Wochentag und Stunde pro Zeile)
+     * @param count Anzahl neuer Zeilen am Anfang des Stores
+     */
+    public HeatmapCube withInsertedRows(DailyBuckets buckets, int count) {
+        int[] updated = Arrays.copyOf(cells, cells.length);
+        buckets.addRowsToHeatmap(updated, 0, count);
+        return new HeatmapCube(updated);
+    }
+}
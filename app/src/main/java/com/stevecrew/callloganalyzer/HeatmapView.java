@@ -0,0 +1,124 @@
+package com.stevecrew.callloganalyzer;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+import java.util.Locale;
+
+/**
+ * Zeichnet eine HeatmapCube als Raster: 7 Zeilen (Mo-So) × 24 Spalten (Stunden).
+ *
+ * Je mehr Anrufe in einer Zelle, desto kräftiger die Farbe (relativ zur
+ * vollsten Zelle). Antippen wechselt den Anruftyp:
+ * Alle → Eingehend → Ausgehend → Verpasst → Abgelehnt → Alle.
+ *
+ * Zeichnet nur - alle Zahlen kommen fertig aus der HeatmapCube.
+ */
+public class HeatmapView extends View {
+
+    private static final String[] WEEKDAY_LABELS = {"Mo", "Tu", "We", "Th", "Fr", "Sa", "Su"};
+    private static final String[] TYPE_LABELS = {"All types", "Incoming", "Outgoing", "Missed", "Rejected"};
+
+    // Farben passend zu den Kacheln (Index 0 = alle Typen, dann typeIndex + 1)
+    private static final int[] TYPE_COLORS = {
+        Color.parseColor("#9C27B0"),  // Alle
+        Color.parseColor("#4CAF50"),  // Eingehend
+        Color.parseColor("#2196F3"),  // Ausgehend
+        Color.parseColor("#FF9800"),  // Verpasst
+        Color.parseColor("#F44336")   // Abgelehnt
+    };
+    private static final int COLOR_EMPTY = Color.parseColor("#3A3A3A");
+    private static final int COLOR_LABEL = Color.parseColor("#B3B3B3");
+
+    private HeatmapCube cube = HeatmapCube.EMPTY;
+    private int selectedType = HeatmapCube.ALL_TYPES;
+
+    private final Paint cellPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF cell = new RectF();
+    private final float density;
+
+    public HeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public HeatmapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        density = getResources().getDisplayMetrics().density;
+        labelPaint.setColor(COLOR_LABEL);
+        labelPaint.setTextSize(11 * density);
+
+        // Antippen: nächsten Anruftyp anzeigen
+        setOnClickListener(v -> {
+            selectedType = selectedType + 1 < HeatmapCube.TYPES ? selectedType + 1 : HeatmapCube.ALL_TYPES;
+            invalidate();
+        });
+    }
+
+    /**
+     * Setzt die anzuzeigende Heatmap und zeichnet neu.
+     */
+    public void setCube(HeatmapCube cube) {
+        this.cube = cube != null ? cube : HeatmapCube.EMPTY;
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // Breite vom Layout, Höhe: 7 Zeilen + Stunden-Beschriftung + Legende
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = (int) (10 * 18 * density);
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        float labelWidth = 28 * density;
+        float rowHeight = getHeight() / 10f;   // 7 Zeilen, Stunden-Zeile, Abstand, Legende
+        float cellWidth = (getWidth() - labelWidth) / HeatmapCube.HOURS;
+        float gap = Math.min(2 * density, cellWidth / 4);
+        float radius = 2 * density;
+
+        int max = cube.getMax(selectedType);
+        int color = TYPE_COLORS[selectedType + 1];
+
+        // === Raster ===
+        labelPaint.setTextAlign(Paint.Align.LEFT);
+        for (int weekday = 0; weekday < HeatmapCube.WEEKDAYS; weekday++) {
+            float top = weekday * rowHeight;
+            canvas.drawText(WEEKDAY_LABELS[weekday], 0, top + rowHeight * 0.7f, labelPaint);
+
+            for (int hour = 0; hour < HeatmapCube.HOURS; hour++) {
+                int count = cube.getCount(weekday, hour, selectedType);
+                if (count == 0 || max == 0) {
+                    cellPaint.setColor(COLOR_EMPTY);
+                } else {
+                    // Mindestens 20% Deckkraft, damit einzelne Anrufe sichtbar bleiben
+                    cellPaint.setColor(color);
+                    cellPaint.setAlpha(51 + 204 * count / max);
+                }
+                float left = labelWidth + hour * cellWidth;
+                cell.set(left, top, left + cellWidth - gap, top + rowHeight - gap);
+                canvas.drawRoundRect(cell, radius, radius, cellPaint);
+            }
+        }
+
+        // === Stunden-Beschriftung (alle 6 Stunden) ===
+        float hourBaseline = 7 * rowHeight + rowHeight * 0.7f;
+        for (int hour = 0; hour < HeatmapCube.HOURS; hour += 6) {
+            canvas.drawText(String.valueOf(hour), labelWidth + hour * cellWidth, hourBaseline, labelPaint);
+        }
+
+        // === Legende ===
+        String legend = String.format(Locale.getDefault(), "%s  ·  peak %d  ·  tap to switch",
+                TYPE_LABELS[selectedType + 1], max);
+        canvas.drawText(legend, 0, 9 * rowHeight + rowHeight * 0.7f, labelPaint);
+    }
+}
@@ -18,7 +18,6 @@ import androidx.fragment.app.Fragment;
 import com.google.android.material.tabs.TabLayout;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -32,7 +31,7 @@ import java.util.Locale;
  * 
  * Verantwortlichkeiten:
  * - Permission-Handling (READ_CALL_LOG, READ_CONTACTS)
- * - Initialisierung von CallLogHelper und BlacklistManager
+ * - Initialisierung von CallLogHelper, BlacklistManager und TypeOverrideManager
  * - Tab-Navigation zwischen Fragments
  * - Detail-Dialog für einzelne Nummern (showCallDetailsForNumber)
  * 
@@ -48,6 +47,7 @@ public class MainActivity extends AppCompatActivity {
     // === Kern-Komponenten ===
     private CallLogHelper callLogHelper;      // Zugriff auf Anrufdaten
     private BlacklistManager blacklistManager; // Verwaltung ausgeblendeter Nummern
+    private TypeOverrideManager typeOverrideManager; // Regeln für erzwungene Anruftypen
     
     // === UI Fragments ===
     private OverviewFragment overviewFragment;   // Tab 1: Statistiken & Charts
@@ -65,6 +65,8 @@ public class MainActivity extends AppCompatActivity {
         blacklistManager = new BlacklistManager(this);
         callLogHelper = new CallLogHelper(this);
         callLogHelper.setBlacklistManager(blacklistManager);
+        typeOverrideManager = new TypeOverrideManager(this);
+        callLogHelper.setTypeOverrideManager(typeOverrideManager);
 
         // === Fragments erstellen ===
         overviewFragment = new OverviewFragment();
@@ -156,17 +158,18 @@ public class MainActivity extends AppCompatActivity {
      * Wird aufgerufen nachdem Permission erteilt wurde.
      */
     private void loadData() {
-        // Initiales Laden der Anrufdaten aus der Datenbank
-        callLogHelper.loadCallLog();
-        
         // === Live-Updates einrichten ===
-        // Callback registrieren: Wird aufgerufen wenn ein neuer Anruf ins Log kommt
+        // Callback registrieren: Wird aufgerufen wenn ein Ladevorgang fertig ist
+        // (initiales Laden oder neuer Anruf im Log)
         callLogHelper.setOnCallLogChangedListener(() -> {
             // Beide Tabs aktualisieren damit Stats & Liste aktuell sind
             if (overviewFragment != null) overviewFragment.updateUI();
             if (allCallsFragment != null) allCallsFragment.updateUI();
         });
         
+        // Initiales Laden der Anrufdaten (im Hintergrund, blockiert die UI nicht)
+        callLogHelper.loadCallLog();
+        
         // Observer starten - ab jetzt werden Änderungen automatisch erkannt
         callLogHelper.startObserving();
     }
@@ -174,7 +177,7 @@ public class MainActivity extends AppCompatActivity {
     /**
      * App wird beendet: Aufräumen!
      * 
-     * WICHTIG: Observer stoppen um Memory Leaks zu vermeiden.
+     * WICHTIG: Observer und Loader-Thread stoppen um Memory Leaks zu vermeiden.
      * Der Observer hält eine Referenz auf den Context - wenn wir ihn
      * nicht deregistrieren, kann die Activity nicht garbage-collected werden.
      */
@@ -182,7 +185,7 @@ public class MainActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         if (callLogHelper != null) {
-            callLogHelper.stopObserving();
+            callLogHelper.shutdown();
         }
     }
 
@@ -196,6 +199,10 @@ public class MainActivity extends AppCompatActivity {
         return blacklistManager;
     }
 
+    public TypeOverrideManager getTypeOverrideManager() {
+        return typeOverrideManager;
+    }
+
     /**
      * Zeigt einen Detail-Dialog für alle Anrufe einer bestimmten Nummer.
      * 
@@ -212,31 +219,17 @@ public class MainActivity extends AppCompatActivity {
         // Kontaktname holen (oder Nummer falls unbekannt)
         String contactName = callLogHelper.getContactNameForNumber(number);
         
-        // Alle Anrufe mit dieser Nummer sammeln
-        List<CallLogEntry> calls = new ArrayList<>();
-        for (CallLogEntry entry : callLogHelper.getAllCalls()) {
-            if (entry.getNumber().equals(number)) {
-                calls.add(entry);
-            }
-        }
-
-        // Nach Dauer sortieren wenn gewünscht (für "Top Duration" Liste)
-        if (sortBy.equals("duration")) {
-            calls.sort((a, b) -> Long.compare(b.getDuration(), a.getDuration()));
-        }
-
-        // === Statistik berechnen ===
-        int totalCalls = calls.size();
-        long totalDuration = 0;
-        int incoming = 0, outgoing = 0, missed = 0;
-        for (CallLogEntry call : calls) {
-            totalDuration += call.getDuration();
-            switch (call.getType()) {
-                case CallLogEntry.TYPE_INCOMING: incoming++; break;
-                case CallLogEntry.TYPE_OUTGOING: outgoing++; break;
-                case CallLogEntry.TYPE_MISSED: missed++; break;
-            }
-        }
+        // Anrufe dieser Nummer aus der Posting-Liste (nach Dauer vorsortiert
+        // für die "Top Duration" Liste, sonst neueste zuerst)
+        NumberPostings.Slice details = callLogHelper.getCallsForNumber(number, sortBy.equals("duration"));
+        List<CallLogEntry> calls = details.getCalls();
+
+        // === Statistik (vorberechnet) ===
+        int totalCalls = details.getCallCount();
+        long totalDuration = details.getTotalDuration();
+        int incoming = details.getIncomingCount();
+        int outgoing = details.getOutgoingCount();
+        int missed = details.getMissedCount();
 
         // === Dialog-Layout aufbauen (programmatisch) ===
         SimpleDateFormat sdfDate = new SimpleDateFormat("dd.MM.yyyy", Locale.getDefault());
@@ -348,10 +341,8 @@ public class MainActivity extends AppCompatActivity {
             .setPositiveButton("Ausblenden", (dialog, which) -> {
                 // Nummer zur Blacklist hinzufügen
                 blacklistManager.addNumber(number);
-                // Filter neu anwenden und UI aktualisieren
-                callLogHelper.setTimePeriod(callLogHelper.getCurrentPeriod());
-                if (overviewFragment != null) overviewFragment.updateUI();
-                if (allCallsFragment != null) allCallsFragment.updateUI();
+                // Filter im Hintergrund neu anwenden, UI folgt über den Listener
+                callLogHelper.applyBlacklist();
                 Toast.makeText(this, "✓ " + number + " ausgeblendet", Toast.LENGTH_SHORT).show();
             })
             .setNegativeButton("Schließen", null)
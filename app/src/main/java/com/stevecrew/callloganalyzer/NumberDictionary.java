@@ -0,0 +1,175 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wörterbuch aller Telefonnummern eines CallLogStore.
+ *
+ * Jede unterschiedliche Nummer bekommt beim Laden eine fortlaufende ID
+ * (0, 1, 2, ...). Pro ID wird nur einmal gespeichert:
+ * - Die Nummer wie im CallLog (z.B. "+49 355 123456")
+ * - Die normalisierte Form (nur Ziffern und Plus, z.B. "+49355123456")
+ * - Der beste Kontaktname (neuester nicht-leerer CACHED_NAME)
+ *
+ * Damit ist das Wörterbuch auch der Namens-Index: Nummer → Name in O(1),
+ * ohne das Anrufprotokoll zu durchsuchen.
+ *
+ * Da wenige hundert Nummern meist den Großteil des Logs ausmachen, spart das
+ * viele Strings. Statistiken und Blacklist-Prüfung arbeiten mit den IDs
+ * (Array-Index) statt pro Anruf Strings zu hashen oder zu normalisieren.
+ *
+ * Nach build() unveränderlich und zwischen Threads teilbar.
+ */
+public class NumberDictionary {
+
+    /** Leeres Wörterbuch */
+    public static final NumberDictionary EMPTY = new Builder(null).build();
+
+    private final int size;
+    private final String[] numbers;      // ID → Nummer wie im CallLog
+    private final String[] normalized;   // ID → Nummer nur mit Ziffern und Plus
+    private final String[] names;        // ID → bester Kontaktname ("" wenn unbekannt)
+    private final long[] nameTimes;      // ID → Zeitpunkt des Anrufs, von dem der Name stammt
+    private final Map<String, Integer> index;  // Nummer → ID
+
+    private NumberDictionary(int size, String[] numbers, String[] normalized, String[] names,
+                             long[] nameTimes, Map<String, Integer> index) {
+        this.size = size;
+        this.numbers = numbers;
+        this.normalized = normalized;
+        this.names = names;
+        this.nameTimes = nameTimes;
+        this.index = index;
+    }
+
+    /** Anzahl unterschiedlicher Nummern */
+    public int size() { return size; }
+
+    /** Nummer wie im CallLog gespeichert */
+    public String getNumber(int id) { return numbers[id]; }
+
+    /** Nummer nur mit Ziffern und Plus (siehe BlacklistManager.normalizeNumber()) */
+    public String getNormalized(int id) { return normalized[id]; }
+
+    /** Neuester nicht-leerer Kontaktname, "" wenn keiner bekannt */
+    public String getName(int id) { return names[id]; }
+
+    /**
+     * Sucht die ID zu einer Nummer (exakt wie im CallLog).
+     *
+     * @return ID, oder -1 wenn die Nummer nicht vorkommt
+     */
+    public int find(String number) {
+        Integer id = index.get(number);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Baut ein NumberDictionary beim Durchlaufen des Cursors auf.
+     * Nicht thread-safe - gehört dem Loader-Thread.
+     */
+    public static class Builder {
+        private int size;
+        private String[] numbers;
+        private String[] normalized;
+        private String[] names;
+        private long[] nameTimes;
+        private final Map<String, Integer> index;
+
+        /**
+         * @param base Wörterbuch das weitergeführt (kopiert) wird, damit
+         *             bestehende IDs gültig bleiben. null = neu anfangen.
+         */
+        public Builder(NumberDictionary base) {
+            int capacity = base != null ? Math.max(16, base.size * 2) : 16;
+            if (base != null) {
+                size = base.size;
+                numbers = Arrays.copyOf(base.numbers, capacity);
+                normalized = Arrays.copyOf(base.normalized, capacity);
+                names = Arrays.copyOf(base.names, capacity);
+                nameTimes = Arrays.copyOf(base.nameTimes, capacity);
+                index = new HashMap<>(base.index);
+            } else {
+                size = 0;
+                numbers = new String[capacity];
+                normalized = new String[capacity];
+                names = new String[capacity];
+                nameTimes = new long[capacity];
+                index = new HashMap<>();
+            }
+        }
+
+        /**
+         * Wie add(number, name, timestamp), ohne Zeitpunkt: Der Name wird
+         * nur übernommen, wenn für die Nummer noch keiner bekannt ist.
+         */
+        public int add(String number, String name) {
+            return add(number, name, Long.MIN_VALUE);
+        }
+
+        /**
+         * Gibt die ID zu einer Nummer zurück und legt sie bei Bedarf an.
+         *
+         * Der Name des neuesten Anrufs gewinnt: Ein nicht-leerer Name ersetzt
+         * den bisherigen nur, wenn dieser noch leer ist oder von einem älteren
+         * Anruf stammt. Die Reihenfolge der Zeilen spielt dafür keine Rolle -
+         * auch nachträglich importierte alte Anrufe überschreiben keinen
+         * neueren Namen aus der Basis.
+         *
+         * @param number Telefonnummer (nicht null)
+         * @param name CACHED_NAME dieser Zeile (null oder "" wenn unbekannt)
+         * @param timestamp DATE dieser Zeile
+         * @return ID der Nummer
+         */
+        public int add(String number, String name, long timestamp) {
+            Integer existing = index.get(number);
+            int id;
+            if (existing != null) {
+                id = existing;
+            } else {
+                if (size == numbers.length) grow();
+                id = size++;
+                numbers[id] = number;
+                normalized[id] = BlacklistManager.normalizeNumber(number);
+                names[id] = "";
+                nameTimes[id] = Long.MIN_VALUE;
+                index.put(number, id);
+            }
+
+            if (name != null && !name.isEmpty()
+                    && (names[id].isEmpty() || timestamp > nameTimes[id])) {
+                names[id] = name;
+                nameTimes[id] = timestamp;
+            }
+            return id;
+        }
+
+        private void grow() {
+            int capacity = numbers.length * 2;
+            numbers = Arrays.copyOf(numbers, capacity);
+            normalized = Arrays.copyOf(normalized, capacity);
+            names = Arrays.copyOf(names, capacity);
+            nameTimes = Arrays.copyOf(nameTimes, capacity);
+        }
+
+        /**
+         * Erzeugt eine unveränderliche Kopie des aktuellen Stands.
+         * Der Builder kann danach weiter befüllt werden.
+         */
+        public NumberDictionary buildPartial() {
+            return new NumberDictionary(size, Arrays.copyOf(numbers, size),
+                    Arrays.copyOf(normalized, size), Arrays.copyOf(names, size),
+                    Arrays.copyOf(nameTimes, size), new HashMap<>(index));
+        }
+
+        /**
+         * Erzeugt das unveränderliche Wörterbuch.
+         * Der Builder darf danach nicht weiterverwendet werden.
+         */
+        public NumberDictionary build() {
+            return new NumberDictionary(size, numbers, normalized, names, nameTimes, index);
+        }
+    }
+}
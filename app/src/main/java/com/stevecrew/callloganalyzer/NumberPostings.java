@@ -0,0 +1,387 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Zeilen pro Nummer eines CallLogStore (Posting-Listen, wie bei einem
+ * Suchindex).
+ *
+ * Für jede numberId liegen ihre Zeilen am Stück in einem int-Array:
+ * - byDate: aufsteigende Zeilen = neueste Anrufe zuerst
+ * - byDuration: dieselben Zeilen nach Dauer absteigend (bei Gleichstand neueste zuerst)
+ * Dazu Summen pro Nummer (Anzahl pro effektivem Typ, Gesamtdauer) - wie
+ * bei StatsSnapshot und CallQuery nach den Typ-Regeln gezählt.
+ *
+ * Der Detail-Dialog einer Nummer kostet damit O(Anrufe dieser Nummer) statt
+ * eines Durchlaufs mit String-Vergleich über alle Anrufe plus Sortieren.
+ *
+ * Die Listen hängen nur von Zeilen und Nummern ab, nicht von Blacklist oder
+ * Typ-Regeln. Ändern sich die Regeln, werden per withTypesOf() nur die
+ * Summen neu gezählt. Unveränderlich, kann vom Loader-Thread kommen.
+ */
+public class NumberPostings {
+
+    /** Posting-Listen für den leeren Store */
+    public static final NumberPostings EMPTY = build(CallLogStore.EMPTY);
+
+    private final CallLogStore store;
+    // Zeilen von numberId n: [offsets[n], offsets[n + 1])
+    private final int[] offsets;
+    private final int[] byDate;
+    private final int[] byDuration;
+
+    // === Summen pro numberId (alle Zeilen, effektiver Typ) ===
+    private final int[] incoming;
+    private final int[] outgoing;
+    private final int[] missed;
+    private final int[] rejected;
+    private final long[] durations;
+
+    private NumberPostings(CallLogStore store, int[] offsets, int[] byDate, int[] byDuration,
+                           int[] incoming, int[] outgoing, int[] missed, int[] rejected,
+                           long[] durations) {
+        this.store = store;
+        this.offsets = offsets;
+        this.byDate = byDate;
+        this.byDuration = byDuration;
+        this.incoming = incoming;
+        this.outgoing = outgoing;
+        this.missed = missed;
+        this.rejected = rejected;
+        this.durations = durations;
+    }
+
+    /**
+     * Baut die Posting-Listen in O(n log n): Zählen, Verteilen (Counting
+     * Sort nach numberId) und einmal global nach Dauer sortieren.
+     */
+    public static NumberPostings build(CallLogStore store) {
+        int size = store.size();
+        int numbers = store.getNumberCount();
+
+        // === Zählen: Summen und Listenlängen ===
+        int[] incoming = new int[numbers];
+        int[] outgoing = new int[numbers];
+        int[] missed = new int[numbers];
+        int[] rejected = new int[numbers];
+        long[] durations = new long[numbers];
+        int[] offsets = new int[numbers + 1];
+        for (int row = 0; row < size; row++) {
+            int id = store.getNumberId(row);
+            offsets[id + 1]++;
+            durations[id] += store.getDuration(row);
+            switch (store.getEffectiveType(row)) {
+                case CallLogEntry.TYPE_INCOMING: incoming[id]++; break;
+                case CallLogEntry.TYPE_OUTGOING: outgoing[id]++; break;
+                case CallLogEntry.TYPE_MISSED: missed[id]++; break;
+                case CallLogEntry.TYPE_REJECTED: rejected[id]++; break;
+            }
+        }
+        for (int id = 0; id < numbers; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+
+        // === Verteilen nach Datum: Zeilen in Store-Reihenfolge ===
+        int[] byDate = new int[size];
+        int[] next = Arrays.copyOf(offsets, numbers);
+        for (int row = 0; row < size; row++) {
+            byDate[next[store.getNumberId(row)]++] = row;
+        }
+
+        // === Verteilen nach Dauer: einmal alle Zeilen sortieren ===
+        // Schlüssel = (negierte Dauer, Zeile) → Dauer absteigend, dann neueste zuerst
+        long[] keys = new long[size];
+        for (int row = 0; row < size; row++) {
+            keys[row] = ((long) -store.getDuration(row) << 32) | row;
+        }
+        Arrays.sort(keys);
+        int[] byDuration = new int[size];
+        System.arraycopy(offsets, 0, next, 0, numbers);
+        for (long key : keys) {
+            int row = (int) key;
+            byDuration[next[store.getNumberId(row)]++] = row;
+        }
+
+        return new NumberPostings(store, offsets, byDate, byDuration,
+                incoming, outgoing, missed, rejected, durations);
+    }
+
+    /**
+     * Dieselben Posting-Listen für einen Store mit denselben Zeilen, aber
+     * neu angewendeten Typ-Regeln (CallLogStore.withForcedTypes()).
+     *
+     * Die Listen werden übernommen (kein Sortieren), nur die Summen pro Typ
+     * werden in einem Durchlauf neu gezählt.
+     */
+    public NumberPostings withTypesOf(CallLogStore retyped) {
+        if (retyped == store) return this;
+        int numbers = retyped.getNumberCount();
+        int[] newIncoming = new int[numbers];
+        int[] newOutgoing = new int[numbers];
+        int[] newMissed = new int[numbers];
+        int[] newRejected = new int[numbers];
+        for (int row = 0; row < retyped.size(); row++) {
+            int id = retyped.getNumberId(row);
+            switch (retyped.getEffectiveType(row)) {
+                case CallLogEntry.TYPE_INCOMING: newIncoming[id]++; break;
+                case CallLogEntry.TYPE_OUTGOING: newOutgoing[id]++; break;
+                case CallLogEntry.TYPE_MISSED: newMissed[id]++; break;
+                case CallLogEntry.TYPE_REJECTED: newRejected[id]++; break;
+            }
+        }
+        return new NumberPostings(retyped, offsets, byDate, byDuration,
+                newIncoming, newOutgoing, newMissed, newRejected, durations);
+    }
+
+    /**
+     * Schreibt die Posting-Listen um neu eingefügte Anrufe fort, ohne alle
+     * Zeilen neu zu sortieren: Nur die neuen Zeilen werden nach Nummer
+     * verteilt und nach Dauer sortiert (O(k log k)), dann pro Nummer vor die
+     * bisherige Liste gesetzt (Datum) bzw. mit ihr gemischt (Dauer). Die
+     * bisherigen Zeilen werden dabei nur um count verschoben kopiert.
+     * Das Ergebnis ist identisch zu build(newStore).
+     *
+     * @param newStore count neue Zeilen gefolgt vom bisherigen Store
+     *                 (Wörterbuch weitergeführt, siehe CallLogStore.prependedWith())
+     * @param count Anzahl neuer Zeilen am Anfang von newStore
+     */
+    public NumberPostings withInsertedRows(CallLogStore newStore, int count) {
+        int numbers = newStore.getNumberCount();
+        int oldNumbers = offsets.length - 1;
+
+        // === Summen fortschreiben, neue Zeilen pro Nummer zählen ===
+        int[] newIncoming = Arrays.copyOf(incoming, numbers);
+        int[] newOutgoing = Arrays.copyOf(outgoing, numbers);
+        int[] newMissed = Arrays.copyOf(missed, numbers);
+        int[] newRejected = Arrays.copyOf(rejected, numbers);
+        long[] newDurations = Arrays.copyOf(durations, numbers);
+        int[] added = new int[numbers + 1];   // Neue Zeilen von numberId n: [added[n], added[n + 1])
+        for (int row = 0; row < count; row++) {
+            int id = newStore.getNumberId(row);
+            added[id + 1]++;
+            newDurations[id] += newStore.getDuration(row);
+            switch (newStore.getEffectiveType(row)) {
+                case CallLogEntry.TYPE_INCOMING: newIncoming[id]++; break;
+                case CallLogEntry.TYPE_OUTGOING: newOutgoing[id]++; break;
+                case CallLogEntry.TYPE_MISSED: newMissed[id]++; break;
+                case CallLogEntry.TYPE_REJECTED: newRejected[id]++; break;
+            }
+        }
+        int[] newOffsets = new int[numbers + 1];
+        for (int id = 0; id < numbers; id++) {
+            int old = id < oldNumbers ? offsets[id + 1] - offsets[id] : 0;
+            newOffsets[id + 1] = newOffsets[id] + old + added[id + 1];
+            added[id + 1] += added[id];
+        }
+
+        // === Neue Zeilen nach Nummer verteilen: nach Datum und nach Dauer ===
+        int[] addedByDate = new int[count];
+        int[] next = Arrays.copyOf(added, numbers);
+        for (int row = 0; row < count; row++) {
+            addedByDate[next[newStore.getNumberId(row)]++] = row;
+        }
+        long[] keys = new long[count];
+        for (int row = 0; row < count; row++) {
+            keys[row] = ((long) -newStore.getDuration(row) << 32) | row;
+        }
+        Arrays.sort(keys);
+        int[] addedByDuration = new int[count];
+        System.arraycopy(added, 0, next, 0, numbers);
+        for (long key : keys) {
+            int row = (int) key;
+            addedByDuration[next[newStore.getNumberId(row)]++] = row;
+        }
+
+        // === Pro Nummer: neue Zeilen vor bzw. zwischen die verschobenen alten ===
+        int[] newByDate = new int[newStore.size()];
+        int[] newByDuration = new int[newStore.size()];
+        for (int id = 0; id < numbers; id++) {
+            int oldFrom = id < oldNumbers ? offsets[id] : 0;
+            int oldTo = id < oldNumbers ? offsets[id + 1] : 0;
+
+            // Nach Datum: neue Zeilen haben die kleineren Zeilennummern
+            int pos = newOffsets[id];
+            for (int i = added[id]; i < added[id + 1]; i++) newByDate[pos++] = addedByDate[i];
+            for (int i = oldFrom; i < oldTo; i++) newByDate[pos++] = byDate[i] + count;
+
+            // Nach Dauer: zwei sortierte Listen mischen (Dauer absteigend, dann Zeile)
+            pos = newOffsets[id];
+            int a = added[id];
+            int b = oldFrom;
+            while (a < added[id + 1] || b < oldTo) {
+                if (b >= oldTo || (a < added[id + 1]
+                        && newStore.getDuration(addedByDuration[a]) >= store.getDuration(byDuration[b]))) {
+                    newByDuration[pos++] = addedByDuration[a++];
+                } else {
+                    newByDuration[pos++] = byDuration[b++] + count;
+                }
+            }
+        }
+
+        return new NumberPostings(newStore, newOffsets, newByDate, newByDuration,
+                newIncoming, newOutgoing, newMissed, newRejected, newDurations);
+    }
+
+    /**
+     * Anrufe einer Nummer innerhalb der Zeilen [start, end) (z.B. Zeitraum).
+     *
+     * @param numberId ID aus CallLogStore.findNumberId(), -1 = leeres Ergebnis
+     * @param sortByDuration true = längste zuerst, false = neueste zuerst
+     */
+    public Slice slice(int numberId, int start, int end, boolean sortByDuration) {
+        if (numberId < 0 || numberId >= offsets.length - 1 || start >= end) {
+            return new Slice(store, new int[0], 0, 0, 0, 0, 0);
+        }
+        int first = offsets[numberId];
+        int last = offsets[numberId + 1];
+
+        // Ganzer Store im Bereich → vorberechnete Summen, Liste direkt kopieren
+        if (start <= 0 && end >= store.size()) {
+            int[] order = sortByDuration ? byDuration : byDate;
+            return new Slice(store, Arrays.copyOfRange(order, first, last),
+                    incoming[numberId], outgoing[numberId], missed[numberId], rejected[numberId],
+                    durations[numberId]);
+        }
+
+        // Zeilen nach Datum sind aufsteigend → Bereich per binärer Suche
+        int from = lowerBound(byDate, first, last, start);
+        int to = lowerBound(byDate, from, last, end);
+        int in = 0, out = 0, miss = 0, rej = 0;
+        long duration = 0;
+        for (int i = from; i < to; i++) {
+            int row = byDate[i];
+            duration += store.getDuration(row);
+            switch (store.getEffectiveType(row)) {
+                case CallLogEntry.TYPE_INCOMING: in++; break;
+                case CallLogEntry.TYPE_OUTGOING: out++; break;
+                case CallLogEntry.TYPE_MISSED: miss++; break;
+                case CallLogEntry.TYPE_REJECTED: rej++; break;
+            }
+        }
+
+        int[] rows;
+        if (!sortByDuration) {
+            rows = Arrays.copyOfRange(byDate, from, to);
+        } else {
+            // Vorsortierte Liste filtern - kein erneutes Sortieren
+            rows = new int[to - from];
+            int count = 0;
+            for (int i = first; i < last; i++) {
+                int row = byDuration[i];
+                if (row >= start && row < end) rows[count++] = row;
+            }
+        }
+        return new Slice(store, rows, in, out, miss, rej, duration);
+    }
+
+    /**
+     * Alle Zeilen der angegebenen Nummern innerhalb von [start, end),
+     * neueste zuerst (z.B. für Suchergebnisse). Ausgeblendete Nummern
+     * werden übersprungen.
+     *
+     * Aufwand O(k log k) für k gefundene Zeilen - unabhängig von der
+     * Gesamtzahl der Anrufe.
+     *
+     * @param numberIds Gesuchte numberIds
+     * @param hiddenIds Pro numberId: durch Blacklist ausgeblendet
+     */
+    public int[] rowsOf(int[] numberIds, boolean[] hiddenIds, int start, int end) {
+        int total = 0;
+        for (int id : numberIds) {
+            if (!hiddenIds[id]) total += offsets[id + 1] - offsets[id];
+        }
+        int[] rows = new int[total];
+        int count = 0;
+        for (int id : numberIds) {
+            if (hiddenIds[id]) continue;
+            int from = lowerBound(byDate, offsets[id], offsets[id + 1], start);
+            int to = lowerBound(byDate, from, offsets[id + 1], end);
+            System.arraycopy(byDate, from, rows, count, to - from);
+            count += to - from;
+        }
+        // Jede Liste ist schon sortiert - zusammen einmal sortieren
+        rows = Arrays.copyOf(rows, count);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    /** Erster Index in [low, high) mit values[i] >= key */
+    private static int lowerBound(int[] values, int low, int high, int key) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Anrufe einer Nummer mit Summen (Ergebnis von slice()).
+     */
+    public static class Slice {
+        private final CallLogStore store;
+        private final int[] rows;
+        private final int incoming, outgoing, missed, rejected;
+        private final long totalDuration;
+
+        Slice(CallLogStore store, int[] rows, int incoming, int outgoing, int missed, int rejected,
+              long totalDuration) {
+            this.store = store;
+            this.rows = rows;
+            this.incoming = incoming;
+            this.outgoing = outgoing;
+            this.missed = missed;
+            this.rejected = rejected;
+            this.totalDuration = totalDuration;
+        }
+
+        public int getCallCount() { return rows.length; }
+        public int getIncomingCount() { return incoming; }
+        public int getOutgoingCount() { return outgoing; }
+        public int getMissedCount() { return missed; }
+        public int getRejectedCount() { return rejected; }
+
+        /** Gesamtdauer in Sekunden */
+        public long getTotalDuration() { return totalDuration; }
+
+        /**
+         * Die Anrufe in Sortier-Reihenfolge. Einträge werden erst beim
+         * Zugriff erzeugt (der Dialog zeigt nur die ersten 50).
+         */
+        public List<CallLogEntry> getCalls() {
+            return store.viewOfRows(rows);
+        }
+
+        /**
+         * Nur die Anrufe, die auch in selected vorkommen (z.B. die Zeilen
+         * einer aktiven CallQuery). Sortier-Reihenfolge bleibt erhalten,
+         * Summen werden für die verbleibenden Zeilen neu gezählt.
+         *
+         * Aufwand O(k log s) für k Anrufe der Nummer und s ausgewählte Zeilen.
+         *
+         * @param selected Ausgewählte Zeilen, aufsteigend sortiert
+         */
+        public Slice restrictedTo(int[] selected) {
+            int[] kept = new int[rows.length];
+            int count = 0;
+            int in = 0, out = 0, miss = 0, rej = 0;
+            long duration = 0;
+            for (int row : rows) {
+                if (Arrays.binarySearch(selected, row) < 0) continue;
+                kept[count++] = row;
+                duration += store.getDuration(row);
+                switch (store.getEffectiveType(row)) {
+                    case CallLogEntry.TYPE_INCOMING: in++; break;
+                    case CallLogEntry.TYPE_OUTGOING: out++; break;
+                    case CallLogEntry.TYPE_MISSED: miss++; break;
+                    case CallLogEntry.TYPE_REJECTED: rej++; break;
+                }
+            }
+            return new Slice(store, Arrays.copyOf(kept, count), in, out, miss, rej, duration);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trigramm-Index über die Nummern und Kontaktnamen eines NumberDictionary
+ * (Suche beim Tippen in der Anrufliste).
+ *
+ * Jede numberId bekommt einen Suchtext: normalisierte Nummer + Name in
+ * Kleinbuchstaben. Für jedes Trigramm (3 aufeinanderfolgende Zeichen) gibt
+ * es eine aufsteigende Liste der numberIds, deren Suchtext es enthält.
+ *
+ * Eine Anfrage schneidet die Listen ihrer Trigramme (kürzeste zuerst) und
+ * prüft nur die übrig gebliebenen Kandidaten per contains(). Anfragen unter
+ * 3 Zeichen prüfen alle Nummern - das Wörterbuch hat nur so viele Einträge
+ * wie unterschiedliche Nummern, nicht wie Anrufe.
+ *
+ * Nummern-Anfragen ("+49 355 69", "6910") werden wie Nummern normalisiert,
+ * damit Leerzeichen und Bindestriche keine Rolle spielen.
+ *
+ * Kommen neue Nummern oder Namen dazu, wird nicht neu gebaut
+ * (withDictionary()): Die geänderten numberIds landen in einer kleinen
+ * Liste, die bei jeder Anfrage zusätzlich direkt geprüft wird. Veraltete
+ * Trigramm-Listen liefern dann höchstens Kandidaten, die contains()
+ * verwirft. Erst ab MAX_CHANGED geänderten Nummern wird neu gebaut.
+ *
+ * Hängt nur vom Wörterbuch ab. Unveränderlich, kann vom Loader-Thread kommen.
+ */
+public class NumberSearchIndex {
+
+    /** Index für das leere Wörterbuch */
+    public static final NumberSearchIndex EMPTY = build(NumberDictionary.EMPTY);
+
+    private static final int GRAM = 3;
+
+    /** Ab so vielen geänderten Nummern wird der Index neu gebaut statt ergänzt */
+    private static final int MAX_CHANGED = 256;
+
+    private final NumberDictionary dictionary;     // Stand von texts
+    private final String[] texts;                  // numberId → Suchtext
+    private final Map<Long, Integer> gramIndex;    // Trigramm → Position in offsets
+    // numberIds von Trigramm g: [offsets[g], offsets[g + 1]) in postings
+    private final int[] offsets;
+    private final int[] postings;
+    // numberIds, deren Suchtext nicht (mehr) zu den Trigramm-Listen passt, aufsteigend
+    private final int[] changed;
+
+    private NumberSearchIndex(NumberDictionary dictionary, String[] texts,
+                              Map<Long, Integer> gramIndex, int[] offsets, int[] postings,
+                              int[] changed) {
+        this.dictionary = dictionary;
+        this.texts = texts;
+        this.gramIndex = gramIndex;
+        this.offsets = offsets;
+        this.postings = postings;
+        this.changed = changed;
+    }
+
+    /**
+     * Baut den Index: alle (Trigramm, numberId) Paare als long sammeln,
+     * einmal sortieren und zu Listen zusammenfassen.
+     */
+    public static NumberSearchIndex build(NumberDictionary dictionary) {
+        int size = dictionary.size();
+        String[] texts = new String[size];
+        Map<Long, Integer> gramIndex = new HashMap<>();
+        long[] pairs = new long[64];
+        int pairCount = 0;
+
+        for (int id = 0; id < size; id++) {
+            // Zeilenumbruch trennt Nummer und Name - Trigramme darüber passen auf keine Anfrage
+            String text = textOf(dictionary, id);
+            texts[id] = text;
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                Long gram = gramOf(text, i);
+                Integer g = gramIndex.get(gram);
+                if (g == null) {
+                    g = gramIndex.size();
+                    gramIndex.put(gram, g);
+                }
+                if (pairCount == pairs.length) pairs = Arrays.copyOf(pairs, pairCount * 2);
+                pairs[pairCount++] = ((long) g << 32) | id;
+            }
+        }
+
+        // Sortiert nach Trigramm, dann numberId → Listen aufsteigend, Duplikate benachbart
+        Arrays.sort(pairs, 0, pairCount);
+        int[] offsets = new int[gramIndex.size() + 1];
+        int[] postings = new int[pairCount];
+        int count = 0;
+        for (int i = 0; i < pairCount; i++) {
+            if (i > 0 && pairs[i] == pairs[i - 1]) continue;
+            postings[count++] = (int) pairs[i];
+            offsets[(int) (pairs[i] >>> 32) + 1] = count;  // Jedes Trigramm hat mindestens einen Eintrag
+        }
+
+        return new NumberSearchIndex(dictionary, texts, gramIndex, offsets,
+                Arrays.copyOf(postings, count), new int[0]);
+    }
+
+    /**
+     * Index für ein weitergeführtes Wörterbuch (gleiche IDs, evtl. neue
+     * Nummern oder neuere Namen, siehe NumberDictionary.Builder(base)).
+     *
+     * Nur die Suchtexte neuer und umbenannter Nummern werden neu erzeugt,
+     * die Trigramm-Listen werden übernommen.
+     */
+    public NumberSearchIndex withDictionary(NumberDictionary updated) {
+        if (updated == dictionary) return this;
+
+        // Nummern ändern sich nie - nur Namen, und neue IDs kommen hinten dazu
+        int[] renamed = new int[updated.size()];
+        int count = 0;
+        for (int id = 0; id < updated.size(); id++) {
+            if (id >= dictionary.size() || !updated.getName(id).equals(dictionary.getName(id))) {
+                renamed[count++] = id;
+            }
+        }
+        int[] allChanged = union(changed, Arrays.copyOf(renamed, count));
+        if (allChanged.length > MAX_CHANGED) return build(updated);
+
+        String[] updatedTexts = Arrays.copyOf(texts, updated.size());
+        for (int i = 0; i < count; i++) {
+            updatedTexts[renamed[i]] = textOf(updated, renamed[i]);
+        }
+        return new NumberSearchIndex(updated, updatedTexts, gramIndex, offsets, postings, allChanged);
+    }
+
+    /** Suchtext einer Nummer */
+    private static String textOf(NumberDictionary dictionary, int id) {
+        return dictionary.getNormalized(id) + "\n" + dictionary.getName(id).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * numberIds, deren Nummer oder Kontaktname die Anfrage enthält.
+     *
+     * @param query Teil einer Nummer oder eines Namens (Groß-/Kleinschreibung egal)
+     * @return numberIds aufsteigend, leer bei leerer Anfrage
+     */
+    public int[] search(String query) {
+        String name = query.trim().toLowerCase(Locale.ROOT);
+        if (name.isEmpty()) return new int[0];
+
+        int[] matches = matching(name);
+        // Sieht wie eine Nummer aus → zusätzlich normalisiert suchen
+        String number = BlacklistManager.normalizeNumber(name);
+        if (!number.isEmpty() && !number.equals(name) && isNumberLike(name)) {
+            matches = union(matches, matching(number));
+        }
+        return matches;
+    }
+
+    /** Alle numberIds, deren Suchtext term enthält */
+    private int[] matching(String term) {
+        int[] candidates = candidates(term);
+        if (candidates == null) {
+            // Zu kurz für Trigramme: alle Suchtexte prüfen (auch die geänderten)
+            int[] result = new int[texts.length];
+            int count = 0;
+            for (int id = 0; id < texts.length; id++) {
+                if (texts[id].contains(term)) result[count++] = id;
+            }
+            return Arrays.copyOf(result, count);
+        }
+        // Geänderte Nummern stehen evtl. nicht (richtig) in den Trigramm-Listen
+        return union(verified(candidates, term), verified(changed, term));
+    }
+
+    /** Die IDs aus ids, deren Suchtext term enthält */
+    private int[] verified(int[] ids, String term) {
+        int[] result = new int[ids.length];
+        int count = 0;
+        for (int id : ids) {
+            if (texts[id].contains(term)) result[count++] = id;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Schnittmenge der Trigramm-Listen von term.
+     *
+     * @return Kandidaten aufsteigend, null = zu kurz für Trigramme (alle prüfen)
+     */
+    private int[] candidates(String term) {
+        if (term.length() < GRAM) return null;
+
+        // Listen der Trigramme bestimmen, kürzeste zuerst schneiden
+        int grams = term.length() - GRAM + 1;
+        long[] lists = new long[grams];   // (Länge << 32) | Trigramm-Position
+        for (int i = 0; i < grams; i++) {
+            Integer g = gramIndex.get(gramOf(term, i));
+            if (g == null) return new int[0];   // Trigramm kommt nirgends vor
+            lists[i] = ((long) (offsets[g + 1] - offsets[g]) << 32) | g;
+        }
+        Arrays.sort(lists);
+
+        int first = (int) lists[0];
+        int[] result = Arrays.copyOfRange(postings, offsets[first], offsets[first + 1]);
+        int size = result.length;
+        for (int i = 1; i < grams && size > 0; i++) {
+            int g = (int) lists[i];
+            size = intersect(result, size, offsets[g], offsets[g + 1]);
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Behält von result[0, size) nur IDs, die auch in postings[from, to) stehen.
+     * Beide aufsteigend - ein gemeinsamer Durchlauf.
+     *
+     * @return Neue Länge von result
+     */
+    private int intersect(int[] result, int size, int from, int to) {
+        int count = 0;
+        int j = from;
+        for (int i = 0; i < size && j < to; i++) {
+            while (j < to && postings[j] < result[i]) j++;
+            if (j < to && postings[j] == result[i]) result[count++] = result[i];
+        }
+        return count;
+    }
+
+    /** Vereinigung zweier aufsteigender ID-Listen */
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, count = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                result[count++] = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** true wenn die Anfrage nur aus Nummern-Zeichen besteht */
+    private static boolean isNumberLike(String query) {
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (!Character.isDigit(c) && "+ -/()".indexOf(c) < 0) return false;
+        }
+        return true;
+    }
+
+    /** Trigramm an Position i als Zahl (3 × 16 Bit) */
+    private static Long gramOf(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+}
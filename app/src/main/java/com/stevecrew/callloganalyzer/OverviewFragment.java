@@ -1,5 +1,6 @@
 package com.stevecrew.callloganalyzer;
 
+import android.app.DatePickerDialog;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.view.LayoutInflater;
@@ -27,6 +28,7 @@ import com.github.mikephil.charting.formatter.PercentFormatter;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -38,11 +40,14 @@ import java.util.Map;
  * Zeigt:
  * - Statistik-Kacheln (Eingehend/Ausgehend/Verpasst/Abgelehnt)
  * - Pie-Chart mit Anrufverteilung
+ * - Heatmap Wochentag × Stunde (Antippen wechselt den Anruftyp)
  * - Top 10 häufigste Anrufer
  * - Top 10 längste Gespräche
- * - Zeitraum-Filter (Dropdown)
+ * - Zeitraum-Filter (Dropdown, auch eigener Datumsbereich)
+ * - Anruf-Filter (Dropdown: Typ, Gesprächsdauer, unbekannte Nummern)
  * - Export-Button (CSV)
  * - Blacklist-Button (Nummern ausblenden)
+ * - Regeln-Button (Anruftyp für bestimmte Nummern erzwingen)
  * 
  * Verwendet MPAndroidChart Bibliothek für das Pie-Chart.
  */
@@ -52,9 +57,11 @@ public class OverviewFragment extends Fragment {
     private TextView tvIncoming, tvOutgoing, tvMissed, tvRejected;  // Statistik-Kacheln
     private TextView tvTopCallers, tvTopDuration;                     // Top-Listen
     private TextView tvStatus, tvTotalCalls;                          // Status & Gesamt
-    private Button btnExport, btnBlacklist;                           // Action-Buttons
+    private Button btnExport, btnOverrides, btnBlacklist;             // Action-Buttons
     private PieChart pieChart;                                        // Chart
+    private HeatmapView heatmapView;                                  // Wochentag × Stunde
     private Spinner spinnerTimePeriod;                                // Zeitraum-Dropdown
+    private Spinner spinnerCallFilter;                                // Anruf-Filter-Dropdown
 
     // === Farben für Anruftypen (Material Design) ===
     private final int COLOR_GREEN = Color.parseColor("#2E7D32");   // Eingehend
@@ -73,7 +80,32 @@ public class OverviewFragment extends Fragment {
         "Letzte 30 Tage",
         "Letzte 3 Monate",
         "Letzte 6 Monate",
-        "Letztes Jahr"
+        "Letztes Jahr",
+        "Eigener Zeitraum..."
+    };
+
+    // Optionen für Anruf-Filter-Dropdown (gleiche Reihenfolge wie callFilterQueries)
+    private final String[] callFilterOptions = {
+        "Kein Filter",
+        "Verpasste & abgelehnte",
+        "Nur Gespräche",
+        "Kurze Gespräche (< 1 Min.)",
+        "Lange Gespräche (≥ 10 Min.)",
+        "Unbekannte Nummern"
+    };
+
+    // Abfragen zu den Filter-Optionen (siehe CallLogHelper.setQuery())
+    private static final CallQuery[] callFilterQueries = {
+        CallQuery.ALL,
+        CallQuery.type(CallLogEntry.TYPE_MISSED, CallLogEntry.TYPE_REJECTED),
+        CallQuery.and(
+                CallQuery.type(CallLogEntry.TYPE_INCOMING, CallLogEntry.TYPE_OUTGOING),
+                CallQuery.durationBetween(1, Long.MAX_VALUE)),
+        CallQuery.and(
+                CallQuery.type(CallLogEntry.TYPE_INCOMING, CallLogEntry.TYPE_OUTGOING),
+                CallQuery.durationBetween(1, 60)),
+        CallQuery.durationBetween(10 * 60, Long.MAX_VALUE),
+        CallQuery.not(CallQuery.hasContactName())
     };
 
     /**
@@ -95,16 +127,21 @@ public class OverviewFragment extends Fragment {
         tvStatus = view.findViewById(R.id.tvStatus);
         tvTotalCalls = view.findViewById(R.id.tvTotalCalls);
         btnExport = view.findViewById(R.id.btnExport);
+        btnOverrides = view.findViewById(R.id.btnOverrides);
         btnBlacklist = view.findViewById(R.id.btnBlacklist);
         pieChart = view.findViewById(R.id.pieChart);
+        heatmapView = view.findViewById(R.id.heatmapView);
         spinnerTimePeriod = view.findViewById(R.id.spinnerTimePeriod);
+        spinnerCallFilter = view.findViewById(R.id.spinnerCallFilter);
 
         // === Komponenten initialisieren ===
         setupPieChart();
         setupTimePeriodSpinner();
+        setupCallFilterSpinner();
 
         // === Click-Handler für Buttons ===
         btnExport.setOnClickListener(v -> exportData());
+        btnOverrides.setOnClickListener(v -> showTypeOverridesDialog());
         btnBlacklist.setOnClickListener(v -> showBlacklistDialog());
 
         return view;
@@ -169,9 +206,72 @@ public class OverviewFragment extends Fragment {
      * Verwendet Custom ArrayAdapter für Dark Theme Styling.
      */
     private void setupTimePeriodSpinner() {
+        spinnerTimePeriod.setAdapter(createDarkAdapter(timePeriodOptions));
+
+        // Selection-Handler: Filter anwenden wenn Zeitraum geändert
+        spinnerTimePeriod.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                MainActivity activity = (MainActivity) getActivity();
+                if (activity != null && activity.getCallLogHelper() != null) {
+                    if (position == CallLogHelper.PERIOD_CUSTOM) {
+                        // Erst Datumsbereich wählen lassen
+                        showDateRangePicker();
+                        return;
+                    }
+                    // Position entspricht PERIOD_* Konstante in CallLogHelper
+                    activity.getCallLogHelper().setTimePeriod(position);
+                    updateUI();
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {}
+        });
+    }
+
+    /**
+     * Konfiguriert den Anruf-Filter Dropdown.
+     * 
+     * Der Filter gilt zusätzlich zum Zeitraum für Statistik, Heatmap,
+     * Anrufliste und Export (CallLogHelper.setQuery()).
+     */
+    private void setupCallFilterSpinner() {
+        spinnerCallFilter.setAdapter(createDarkAdapter(callFilterOptions));
+
+        // Aktiven Filter vorauswählen (Fragment kann neu erstellt worden sein)
+        MainActivity activity = (MainActivity) getActivity();
+        if (activity != null && activity.getCallLogHelper() != null) {
+            CallQuery current = activity.getCallLogHelper().getQuery();
+            for (int i = 0; i < callFilterQueries.length; i++) {
+                if (callFilterQueries[i] == current) spinnerCallFilter.setSelection(i);
+            }
+        }
+
+        spinnerCallFilter.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                MainActivity activity = (MainActivity) getActivity();
+                if (activity == null || activity.getCallLogHelper() == null) return;
+                CallLogHelper callLogHelper = activity.getCallLogHelper();
+                // Erste Auswahl beim Anzeigen ist der schon aktive Filter
+                if (callFilterQueries[position] == callLogHelper.getQuery()) return;
+                callLogHelper.setQuery(callFilterQueries[position]);
+                updateUI();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {}
+        });
+    }
+
+    /**
+     * Adapter für die Dropdowns mit Dark Theme Styling.
+     */
+    private ArrayAdapter<String> createDarkAdapter(String[] options) {
         // Custom Adapter für Dark Theme
         ArrayAdapter<String> adapter = new ArrayAdapter<String>(requireContext(),
-                android.R.layout.simple_spinner_item, timePeriodOptions) {
+                android.R.layout.simple_spinner_item, options) {
             
             // Geschlossener Zustand (ausgewähltes Item)
             @Override
@@ -196,23 +296,67 @@ public class OverviewFragment extends Fragment {
         };
 
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        spinnerTimePeriod.setAdapter(adapter);
+        return adapter;
+    }
 
-        // Selection-Handler: Filter anwenden wenn Zeitraum geändert
-        spinnerTimePeriod.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            @Override
-            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                MainActivity activity = (MainActivity) getActivity();
-                if (activity != null && activity.getCallLogHelper() != null) {
-                    // Position entspricht PERIOD_* Konstante in CallLogHelper
-                    activity.getCallLogHelper().setTimePeriod(position);
-                    updateUI();
+    /**
+     * Zeigt nacheinander zwei Datumsauswahlen ("Von" und "Bis") und filtert
+     * danach auf diesen Bereich (beide Tage einschließlich).
+     * 
+     * Bei Abbruch wird der vorherige Zeitraum wieder im Dropdown ausgewählt.
+     * Ist schon ein eigener Bereich aktiv, wird der Dialog auch über einen
+     * Tipp auf den Status-Text geöffnet (siehe updateUI()).
+     */
+    private void showDateRangePicker() {
+        MainActivity activity = (MainActivity) getActivity();
+        if (activity == null) return;
+        CallLogHelper callLogHelper = activity.getCallLogHelper();
+
+        // Vorschlag: bisheriger eigener Bereich, sonst der letzte Monat
+        Calendar suggestion = Calendar.getInstance();
+        if (callLogHelper.getCurrentPeriod() == CallLogHelper.PERIOD_CUSTOM) {
+            suggestion.setTimeInMillis(callLogHelper.getRangeFrom());
+        } else {
+            suggestion.add(Calendar.MONTH, -1);
+        }
+
+        DatePickerDialog fromDialog = new DatePickerDialog(requireContext(), (picker, year, month, day) -> {
+            Calendar from = Calendar.getInstance();
+            from.clear();
+            from.set(year, month, day);
+
+            Calendar today = Calendar.getInstance();
+            DatePickerDialog toDialog = new DatePickerDialog(requireContext(), (picker2, year2, month2, day2) -> {
+                // Ende exklusiv: Mitternacht nach dem gewählten Tag
+                Calendar to = Calendar.getInstance();
+                to.clear();
+                to.set(year2, month2, day2);
+                to.add(Calendar.DAY_OF_MONTH, 1);
+                if (!to.after(from)) {
+                    Toast.makeText(requireContext(), "Ende liegt vor dem Beginn", Toast.LENGTH_SHORT).show();
+                    restorePeriodSelection();
+                    return;
                 }
-            }
+                callLogHelper.setDateRange(from.getTimeInMillis(), to.getTimeInMillis());
+                updateUI();
+            }, today.get(Calendar.YEAR), today.get(Calendar.MONTH), today.get(Calendar.DAY_OF_MONTH));
+            toDialog.setTitle("Bis");
+            toDialog.getDatePicker().setMinDate(from.getTimeInMillis());
+            toDialog.setOnCancelListener(dialog -> restorePeriodSelection());
+            toDialog.show();
+        }, suggestion.get(Calendar.YEAR), suggestion.get(Calendar.MONTH), suggestion.get(Calendar.DAY_OF_MONTH));
+        fromDialog.setTitle("Von");
+        fromDialog.setOnCancelListener(dialog -> restorePeriodSelection());
+        fromDialog.show();
+    }
 
-            @Override
-            public void onNothingSelected(AdapterView<?> parent) {}
-        });
+    /**
+     * Wählt im Dropdown wieder den aktuell aktiven Zeitraum aus.
+     */
+    private void restorePeriodSelection() {
+        MainActivity activity = (MainActivity) getActivity();
+        if (activity == null) return;
+        spinnerTimePeriod.setSelection(activity.getCallLogHelper().getCurrentPeriod());
     }
 
     /**
@@ -231,25 +375,31 @@ public class OverviewFragment extends Fragment {
         CallLogHelper callLogHelper = activity.getCallLogHelper();
         if (callLogHelper == null) return;
 
-        // === Statistik-Werte holen ===
-        int incoming = callLogHelper.getIncomingCount();
-        int outgoing = callLogHelper.getOutgoingCount();
-        int missed = callLogHelper.getMissedCount();
-        int rejected = callLogHelper.getRejectedCount();
-        int total = callLogHelper.getAllCalls().size();
+        // === Statistik-Werte holen (ein Durchlauf für alles, siehe StatsSnapshot) ===
+        StatsSnapshot stats = callLogHelper.getStats();
+        int incoming = stats.getIncomingCount();
+        int outgoing = stats.getOutgoingCount();
+        int missed = stats.getMissedCount();
+        int rejected = stats.getRejectedCount();
+        int total = stats.getTotalCalls();
 
         // === Kacheln aktualisieren ===
         tvIncoming.setText(formatNumber(incoming));
         tvOutgoing.setText(formatNumber(outgoing));
         tvMissed.setText(formatNumber(missed));
         tvRejected.setText(formatNumber(rejected));
-        tvTotalCalls.setText(total + " calls");
+        // Vorläufige Zahlen (erstes Laden läuft noch) mit "+" kennzeichnen
+        boolean provisional = callLogHelper.isProvisional();
+        tvTotalCalls.setText(total + (provisional ? "+ calls" : " calls"));
 
         // === Pie-Chart aktualisieren ===
         updatePieChart(incoming, outgoing, missed, rejected);
 
+        // === Heatmap aktualisieren (vorberechnet, siehe HeatmapCube) ===
+        heatmapView.setCube(callLogHelper.getHeatmap());
+
         // === Top Callers Liste ===
-        lastTopCallers = callLogHelper.getTopCallers(10);
+        lastTopCallers = stats.getTopCallers(10);
         StringBuilder callerSb = new StringBuilder();
         int rank = 1;
         for (Map.Entry<String, Integer> entry : lastTopCallers) {
@@ -264,7 +414,7 @@ public class OverviewFragment extends Fragment {
         tvTopCallers.setOnClickListener(v -> showTopCallersDetail());
 
         // === Top Duration Liste ===
-        lastTopDuration = callLogHelper.getTopDuration(10);
+        lastTopDuration = stats.getTopDuration(10);
         StringBuilder durationSb = new StringBuilder();
         rank = 1;
         for (Map.Entry<String, Long> entry : lastTopDuration) {
@@ -277,8 +427,26 @@ public class OverviewFragment extends Fragment {
         tvTopDuration.setText(durationSb.toString().trim());
         tvTopDuration.setOnClickListener(v -> showTopDurationDetail());
 
-        // Status-Text
-        tvStatus.setText("✓ Last updated just now");
+        // Status-Text (bei eigenem Zeitraum den Bereich anzeigen)
+        boolean customRange = callLogHelper.getCurrentPeriod() == CallLogHelper.PERIOD_CUSTOM;
+        if (provisional) {
+            tvStatus.setText("⟳ Loading call history...");
+        } else if (customRange) {
+            SimpleDateFormat format = new SimpleDateFormat("dd.MM.yyyy", Locale.getDefault());
+            // Ende ist exklusiv → letzten enthaltenen Tag anzeigen
+            tvStatus.setText("📅 " + format.format(new Date(callLogHelper.getRangeFrom())) + " – "
+                    + format.format(new Date(callLogHelper.getRangeTo() - 1)) + "  ✎");
+        } else {
+            tvStatus.setText("✓ Last updated just now");
+        }
+        // Erneutes Auswählen von "Eigener Zeitraum..." löst onItemSelected nicht aus,
+        // daher lässt sich der aktive Bereich über den Status-Text ändern
+        if (customRange) {
+            tvStatus.setOnClickListener(v -> showDateRangePicker());
+        } else {
+            tvStatus.setOnClickListener(null);
+            tvStatus.setClickable(false);
+        }
     }
 
     /**
@@ -421,7 +589,8 @@ public class OverviewFragment extends Fragment {
         }
 
         // Export durchführen
-        String path = CSVExporter.exportToCSV(requireContext(), activity.getCallLogHelper().getAllCalls());
+        CallLogHelper callLogHelper = activity.getCallLogHelper();
+        String path = CSVExporter.exportToCSV(requireContext(), callLogHelper, callLogHelper.getQuery());
         if (path != null) {
             Toast.makeText(requireContext(), "✓ Exported to Downloads", Toast.LENGTH_LONG).show();
             tvStatus.setText("✓ Exported to " + path);
@@ -430,6 +599,101 @@ public class OverviewFragment extends Fragment {
         }
     }
 
+    /**
+     * Zeigt den Dialog zum Verwalten der Typ-Regeln.
+     * 
+     * Eine Regel erzwingt für eine Nummer einen Anruftyp in der Statistik
+     * (z.B. eigene Festnetz-Durchwahl immer als ausgehend zählen).
+     */
+    private void showTypeOverridesDialog() {
+        MainActivity activity = (MainActivity) getActivity();
+        if (activity == null) return;
+        
+        TypeOverrideManager overrideManager = activity.getTypeOverrideManager();
+        
+        // Anruftypen in Spinner-Reihenfolge
+        final String[] typeLabels = {"Eingehend", "Ausgehend", "Verpasst", "Abgelehnt"};
+        final int[] typeValues = {
+            CallLogEntry.TYPE_INCOMING, CallLogEntry.TYPE_OUTGOING,
+            CallLogEntry.TYPE_MISSED, CallLogEntry.TYPE_REJECTED
+        };
+
+        // === Dialog-Layout aufbauen ===
+        LinearLayout layout = new LinearLayout(requireContext());
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.setPadding(48, 24, 48, 8);
+
+        // Aktuelle Regeln anzeigen
+        Map<String, Integer> rules = overrideManager.getRules();
+
+        TextView infoText = new TextView(requireContext());
+        if (rules.isEmpty()) {
+            infoText.setText("Keine Regeln definiert.");
+        } else {
+            StringBuilder sb = new StringBuilder("Regeln:\n");
+            for (Map.Entry<String, Integer> rule : rules.entrySet()) {
+                String label = String.valueOf(rule.getValue());
+                for (int i = 0; i < typeValues.length; i++) {
+                    if (typeValues[i] == rule.getValue()) label = typeLabels[i];
+                }
+                sb.append("• ").append(rule.getKey()).append(" → ").append(label).append("\n");
+            }
+            infoText.setText(sb.toString().trim());
+        }
+        infoText.setTextColor(Color.parseColor("#B3B3B3"));
+        infoText.setPadding(0, 0, 0, 24);
+        layout.addView(infoText);
+
+        // Eingabefeld für Nummer
+        EditText input = new EditText(requireContext());
+        input.setHint("Nummer eingeben...");
+        input.setTextColor(Color.WHITE);
+        input.setHintTextColor(Color.parseColor("#808080"));
+        input.setBackgroundColor(Color.parseColor("#3D3D3D"));
+        input.setPadding(24, 24, 24, 24);
+        layout.addView(input);
+
+        // Auswahl des erzwungenen Typs (Standard: Ausgehend)
+        Spinner typeSpinner = new Spinner(requireContext());
+        ArrayAdapter<String> typeAdapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, typeLabels);
+        typeAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        typeSpinner.setAdapter(typeAdapter);
+        typeSpinner.setSelection(1);
+        layout.addView(typeSpinner);
+
+        // === Dialog erstellen ===
+        AlertDialog.Builder builder = new AlertDialog.Builder(requireContext(), R.style.DarkDialogTheme)
+            .setTitle("⚙ Anruftyp-Regeln")
+            .setView(layout)
+            .setPositiveButton("Hinzufügen", (dialog, which) -> {
+                String number = input.getText().toString().trim();
+                if (!number.isEmpty()) {
+                    int type = typeValues[typeSpinner.getSelectedItemPosition()];
+                    // Ohne Ziffern (z.B. "abc") wäre das Muster leer und würde jede Nummer treffen
+                    if (!overrideManager.addRule(number, type)) {
+                        Toast.makeText(requireContext(), "Ungültige Nummer: " + number, Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    // Typen im Hintergrund neu berechnen, UI folgt über den Listener
+                    activity.getCallLogHelper().applyTypeOverrides();
+                    Toast.makeText(requireContext(), "✓ Regel für " + number + " gespeichert", Toast.LENGTH_SHORT).show();
+                }
+            })
+            .setNegativeButton("Abbrechen", null);
+
+        // "Alle löschen" nur anzeigen wenn Regeln vorhanden
+        if (!rules.isEmpty()) {
+            builder.setNeutralButton("Alle löschen", (dialog, which) -> {
+                overrideManager.clear();
+                activity.getCallLogHelper().applyTypeOverrides();
+                Toast.makeText(requireContext(), "✓ Regeln gelöscht", Toast.LENGTH_SHORT).show();
+            });
+        }
+
+        builder.show();
+    }
+
     /**
      * Zeigt den Blacklist-Dialog zum Verwalten ausgeblendeter Nummern.
      * 
@@ -482,9 +746,8 @@ public class OverviewFragment extends Fragment {
                 if (!number.isEmpty()) {
                     // Nummer zur Blacklist hinzufügen
                     blacklistManager.addNumber(number);
-                    // Filter neu anwenden
-                    activity.getCallLogHelper().setTimePeriod(activity.getCallLogHelper().getCurrentPeriod());
-                    updateUI();
+                    // Filter im Hintergrund neu anwenden, UI folgt über den Listener
+                    activity.getCallLogHelper().applyBlacklist();
                     Toast.makeText(requireContext(), "✓ " + number + " ausgeblendet", Toast.LENGTH_SHORT).show();
                 }
             })
@@ -494,8 +757,7 @@ public class OverviewFragment extends Fragment {
         if (!blacklisted.isEmpty()) {
             builder.setNeutralButton("Alle löschen", (dialog, which) -> {
                 blacklistManager.clear();
-                activity.getCallLogHelper().setTimePeriod(activity.getCallLogHelper().getCurrentPeriod());
-                updateUI();
+                activity.getCallLogHelper().applyBlacklist();
                 Toast.makeText(requireContext(), "✓ Filter zurückgesetzt", Toast.LENGTH_SHORT).show();
             });
         }
@@ -0,0 +1,125 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.Arrays;
+
+/**
+ * Vorberechnete Statistik für alle festen Zeiträume (PERIOD_ALL bis
+ * PERIOD_1_YEAR) eines Stores.
+ *
+ * Da die Zeilen nach Datum absteigend sortiert sind, ist jeder Zeitraum
+ * ein Präfix [0, countSince(cutoff)) und die Zeiträume sind ineinander
+ * verschachtelt (7 Tage ⊂ 30 Tage ⊂ ... ⊂ alle). Ein einziger Durchlauf
+ * über die Zeilen zählt weiter und hält an jeder Zeitraum-Grenze einen
+ * Snapshot fest.
+ *
+ * Der Wechsel im Zeitraum-Dropdown ist damit nur noch ein Nachschlagen.
+ * Kommen nur neue Anrufe dazu, werden die Snapshots per
+ * StatsSnapshot.withInsertedRows() fortgeschrieben (withInsertedRows()).
+ * Einträge sind über ihren Zeilen-Bereich adressiert, nicht über die
+ * PERIOD_*-Konstante: Ist seit dem Bauen ein Anruf aus einem Zeitraum
+ * herausgealtert, passt der Bereich nicht mehr und get() liefert null
+ * (dann werden die Tages-Summen benutzt).
+ *
+ * Unveränderlich, kann vom Loader-Thread kommen.
+ */
+public class PeriodStatsTable {
+
+    /** Leere Tabelle (get() liefert immer null) */
+    public static final PeriodStatsTable EMPTY = new PeriodStatsTable(new int[0], new StatsSnapshot[0]);
+
+    private final int[] ends;                // Zeilen-Ende pro Eintrag, aufsteigend
+    private final StatsSnapshot[] snapshots;
+
+    /**
+     * Tabelle aus fertigen Einträgen (z.B. aus CallLogSnapshot).
+     *
+     * @param ends Zeilen-Ende pro Eintrag, aufsteigend und ohne Duplikate
+     */
+    PeriodStatsTable(int[] ends, StatsSnapshot[] snapshots) {
+        this.ends = ends;
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Berechnet die Statistik für alle Zeiträume in einem Durchlauf.
+     *
+     * @param store Alle geladenen Anrufe
+     * @param hiddenIds Pro numberId: durch Blacklist ausgeblendet
+     * @param cutoffs Beginn jedes Zeitraums in ms (z.B. CallLogHelper.getCutoffTime())
+     */
+    public static PeriodStatsTable build(CallLogStore store, boolean[] hiddenIds, long[] cutoffs) {
+        int[] ends = endsOf(store, cutoffs);
+        int count = ends.length;
+
+        // Ein Durchlauf: bis zur nächsten Grenze weiterzählen, dann festhalten
+        StatsSnapshot[] snapshots = new StatsSnapshot[count];
+        StatsSnapshot.Builder builder = new StatsSnapshot.Builder(store);
+        int row = 0;
+        for (int i = 0; i < count; i++) {
+            builder.addRows(row, ends[i], hiddenIds);
+            row = ends[i];
+            snapshots[i] = builder.buildSnapshot();
+        }
+        return new PeriodStatsTable(ends, snapshots);
+    }
+
+    /**
+     * Schreibt die Tabelle um neu eingefügte Anrufe fort.
+     *
+     * Umfasst ein Zeitraum jetzt die neuen Zeilen plus genau einen bisher
+     * gespeicherten Bereich, wird dessen Snapshot fortgeschrieben - Aufwand
+     * O(neue Zeilen) plus Kopieren der Zähler, statt alle Zeilen zu zählen.
+     * Ist seit dem letzten Laden ein Anruf aus einem Zeitraum herausgealtert,
+     * wird die Tabelle neu gebaut.
+     *
+     * @param store count neue Zeilen gefolgt vom bisherigen Store
+     * @param hiddenIds Blacklist-Maske für store (unverändert seit dem Bauen)
+     * @param cutoffs Beginn jedes Zeitraums in ms, zum jetzigen Zeitpunkt
+     * @param count Anzahl neuer Zeilen am Anfang von store
+     */
+    public PeriodStatsTable withInsertedRows(CallLogStore store, boolean[] hiddenIds, long[] cutoffs,
+                                             int count) {
+        int[] newEnds = endsOf(store, cutoffs);
+        StatsSnapshot[] newSnapshots = new StatsSnapshot[newEnds.length];
+        for (int i = 0; i < newEnds.length; i++) {
+            int previous = newEnds[i] >= count ? Arrays.binarySearch(ends, newEnds[i] - count) : -1;
+            if (previous < 0) return build(store, hiddenIds, cutoffs);
+            newSnapshots[i] = snapshots[previous].withInsertedRows(store, count, hiddenIds);
+        }
+        return new PeriodStatsTable(newEnds, newSnapshots);
+    }
+
+    /** Zeilen-Ende pro Zeitraum, aufsteigend und ohne Duplikate */
+    private static int[] endsOf(CallLogStore store, long[] cutoffs) {
+        int[] ends = new int[cutoffs.length];
+        for (int i = 0; i < cutoffs.length; i++) {
+            ends[i] = store.countSince(cutoffs[i]);
+        }
+        Arrays.sort(ends);
+        int count = 0;
+        for (int i = 0; i < ends.length; i++) {
+            if (count == 0 || ends[i] != ends[count - 1]) ends[count++] = ends[i];
+        }
+        return Arrays.copyOf(ends, count);
+    }
+
+    /** Anzahl Einträge */
+    int size() { return ends.length; }
+
+    /** Zeilen-Ende des i-ten Eintrags (aufsteigend) */
+    int getEnd(int i) { return ends[i]; }
+
+    /** Statistik des i-ten Eintrags, für die Zeilen [0, getEnd(i)) */
+    StatsSnapshot getSnapshot(int i) { return snapshots[i]; }
+
+    /**
+     * Vorberechnete Statistik für die Zeilen [start, end).
+     *
+     * @return Snapshot, oder null wenn der Bereich kein vorberechneter Zeitraum ist
+     */
+    public StatsSnapshot get(int start, int end) {
+        if (start != 0) return null;
+        int i = Arrays.binarySearch(ends, end);
+        return i >= 0 ? snapshots[i] : null;
+    }
+}
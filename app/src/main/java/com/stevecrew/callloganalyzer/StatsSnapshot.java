@@ -0,0 +1,287 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unveränderliche Statistik über die gefilterten Anrufe.
+ *
+ * Wird in EINEM Durchlauf über die Zeilen berechnet (oder aus
+ * vorberechneten Tages-Summen, siehe DailyBuckets):
+ * - Anzahl pro Anruftyp (effektiver Typ nach Override-Regeln)
+ * - Gesamtzahl und Gesamtdauer
+ * - Anzahl und Dauer pro Nummer (Array-Index = numberId)
+ * - Top-Listen (häufigste Anrufer, längste Gespräche)
+ *
+ * Vorher hat jede Kachel und jede Top-Liste die Anrufliste einzeln
+ * durchlaufen. Jetzt rendert OverviewFragment nur noch diesen Snapshot.
+ *
+ * Kommen nur neue Anrufe dazu, wird der Snapshot per withInsertedRows()
+ * fortgeschrieben statt neu berechnet (siehe dort).
+ */
+public class StatsSnapshot {
+
+    /** Länge der vorberechneten Top-Listen (Top 10 in der Übersicht) */
+    public static final int TOP_LIMIT = 10;
+
+    private final CallLogStore store;
+    private final int incoming;
+    private final int outgoing;
+    private final int missed;
+    private final int rejected;
+    private final int totalCalls;
+    private final long totalDuration;
+    private final int[] callCounts;      // numberId → Anzahl Anrufe
+    private final long[] durations;      // numberId → Gesamtdauer in Sekunden
+    private final int[] topCallerIds;    // numberIds der Top-Anrufer (höchstens TOP_LIMIT)
+    private final int[] topDurationIds;  // numberIds der längsten Gespräche
+    private final List<Map.Entry<String, Integer>> topCallers;
+    private final List<Map.Entry<String, Long>> topDuration;
+
+    private StatsSnapshot(CallLogStore store, int incoming, int outgoing, int missed, int rejected,
+                          int totalCalls, long totalDuration, int[] callCounts, long[] durations) {
+        this(store, incoming, outgoing, missed, rejected, totalCalls, totalDuration,
+                callCounts, durations,
+                TopK.byCount(callCounts, TOP_LIMIT),
+                TopK.byValue(durations, callCounts, TOP_LIMIT));
+    }
+
+    private StatsSnapshot(CallLogStore store, int incoming, int outgoing, int missed, int rejected,
+                          int totalCalls, long totalDuration, int[] callCounts, long[] durations,
+                          int[] topCallerIds, int[] topDurationIds) {
+        this.store = store;
+        this.incoming = incoming;
+        this.outgoing = outgoing;
+        this.missed = missed;
+        this.rejected = rejected;
+        this.totalCalls = totalCalls;
+        this.totalDuration = totalDuration;
+        this.callCounts = callCounts;
+        this.durations = durations;
+        this.topCallerIds = topCallerIds;
+        this.topDurationIds = topDurationIds;
+        this.topCallers = callerEntries(topCallerIds);
+        this.topDuration = durationEntries(topDurationIds);
+    }
+
+    /**
+     * Schreibt den Snapshot um neu eingefügte Anrufe fort.
+     *
+     * Voraussetzung: newStore entspricht dem bisherigen Store mit count neuen
+     * Zeilen vorne ([0, count)), alle übrigen Zeilen liegen unverändert im
+     * Zeitraum, und Blacklist/Regeln sind gleich geblieben. Sonst muss neu
+     * berechnet werden.
+     *
+     * Aufwand pro neuer Zeile: O(1) für Zähler und Summen, O(log K) Suche
+     * plus O(K) Kopieren für die Top-Listen. Dazu einmal die Zähler-Arrays
+     * kopieren (der Snapshot bleibt unveränderlich).
+     *
+     * @param newStore Store mit den neuen Zeilen
+     * @param count Anzahl neuer Zeilen am Anfang von newStore
+     * @param hiddenIds Blacklist-Maske für newStore (Index = numberId)
+     */
+    public StatsSnapshot withInsertedRows(CallLogStore newStore, int count, boolean[] hiddenIds) {
+        // Neue Nummern bekommen neue numberIds am Ende des Wörterbuchs
+        int[] counts = Arrays.copyOf(callCounts, newStore.getNumberCount());
+        long[] sums = Arrays.copyOf(durations, counts.length);
+        int[] callerIds = topCallerIds;
+        int[] durationIds = topDurationIds;
+
+        int in = incoming, out = outgoing, miss = missed, rej = rejected;
+        int total = totalCalls;
+        long totalSum = totalDuration;
+
+        for (int row = 0; row < count; row++) {
+            int id = newStore.getNumberId(row);
+            if (hiddenIds[id]) continue;
+
+            switch (newStore.getEffectiveType(row)) {
+                case CallLogEntry.TYPE_INCOMING: in++; break;
+                case CallLogEntry.TYPE_OUTGOING: out++; break;
+                case CallLogEntry.TYPE_MISSED: miss++; break;
+                case CallLogEntry.TYPE_REJECTED: rej++; break;
+            }
+            int duration = newStore.getDuration(row);
+            total++;
+            totalSum += duration;
+            counts[id]++;
+            sums[id] += duration;
+
+            // Werte steigen nur - in den Top-Listen kann sich nur diese Nummer verschieben
+            callerIds = TopK.raisedCount(callerIds, id, counts, TOP_LIMIT);
+            durationIds = TopK.raisedValue(durationIds, id, sums, TOP_LIMIT);
+        }
+
+        return new StatsSnapshot(newStore, in, out, miss, rej, total, totalSum,
+                counts, sums, callerIds, durationIds);
+    }
+
+    /**
+     * Sammelt Werte für einen StatsSnapshot - aus einzelnen Zeilen oder
+     * aus vorberechneten Summen (z.B. DailyBuckets).
+     * Nicht thread-safe.
+     */
+    public static class Builder {
+        private final CallLogStore store;
+        private int incoming, outgoing, missed, rejected, total;
+        private long totalDuration;
+        private final int[] callCounts;
+        private final long[] durations;
+
+        public Builder(CallLogStore store) {
+            this.store = store;
+            this.callCounts = new int[store.getNumberCount()];
+            this.durations = new long[callCounts.length];
+        }
+
+        /**
+         * Zählt die Zeilen [from, to) ohne ausgeblendete Nummern.
+         */
+        public void addRows(int from, int to, boolean[] hiddenIds) {
+            for (int row = from; row < to; row++) {
+                int id = store.getNumberId(row);
+                if (hiddenIds[id]) continue;
+
+                addTypeCount(store.getEffectiveType(row), 1);
+                int duration = store.getDuration(row);
+                total++;
+                totalDuration += duration;
+                callCounts[id]++;
+                durations[id] += duration;
+            }
+        }
+
+        /**
+         * Zählt ausgewählte Zeilen (z.B. aus CallQuery.select() - dort sind
+         * ausgeblendete Nummern schon entfernt).
+         */
+        public void addRows(int[] rows) {
+            for (int row : rows) {
+                int id = store.getNumberId(row);
+                addTypeCount(store.getEffectiveType(row), 1);
+                int duration = store.getDuration(row);
+                total++;
+                totalDuration += duration;
+                callCounts[id]++;
+                durations[id] += duration;
+            }
+        }
+
+        /**
+         * Addiert vorberechnete Anzahlen für einen effektiven Anruftyp.
+         * Zählt nur die Typ-Kachel, nicht die Gesamtzahl (siehe addTotals()).
+         */
+        public void addTypeCount(int type, int count) {
+            switch (type) {
+                case CallLogEntry.TYPE_INCOMING: incoming += count; break;
+                case CallLogEntry.TYPE_OUTGOING: outgoing += count; break;
+                case CallLogEntry.TYPE_MISSED: missed += count; break;
+                case CallLogEntry.TYPE_REJECTED: rejected += count; break;
+            }
+        }
+
+        /** Addiert vorberechnete Gesamtzahl und Gesamtdauer */
+        public void addTotals(int calls, long duration) {
+            total += calls;
+            totalDuration += duration;
+        }
+
+        /** Addiert vorberechnete Werte für eine Nummer */
+        public void addNumber(int numberId, int calls, long duration) {
+            callCounts[numberId] += calls;
+            durations[numberId] += duration;
+        }
+
+        public StatsSnapshot build() {
+            return new StatsSnapshot(store, incoming, outgoing, missed, rejected,
+                    total, totalDuration, callCounts, durations);
+        }
+
+        /**
+         * Wie build(), aber der Builder kann danach weiter zählen (die
+         * Zähler-Arrays werden kopiert). Für verschachtelte Bereiche, siehe
+         * PeriodStatsTable.
+         */
+        public StatsSnapshot buildSnapshot() {
+            return new StatsSnapshot(store, incoming, outgoing, missed, rejected,
+                    total, totalDuration, callCounts.clone(), durations.clone());
+        }
+    }
+
+    // === Zähler ===
+
+    public int getIncomingCount() { return incoming; }
+    public int getOutgoingCount() { return outgoing; }
+    public int getMissedCount() { return missed; }
+    public int getRejectedCount() { return rejected; }
+
+    /** Anzahl gefilterter Anrufe (alle Typen) */
+    public int getTotalCalls() { return totalCalls; }
+
+    /** Gesamte Gesprächsdauer in Sekunden */
+    public long getTotalDuration() { return totalDuration; }
+
+    /** Anzahl Anrufe einer numberId (für CallLogSnapshot) */
+    int getCallCount(int numberId) { return callCounts[numberId]; }
+
+    /** Gesamtdauer einer numberId in Sekunden (für CallLogSnapshot) */
+    long getDuration(int numberId) { return durations[numberId]; }
+
+    // === Top-Listen ===
+
+    /**
+     * Häufigste Anrufer, absteigend nach Anzahl.
+     *
+     * @param limit Maximale Anzahl Ergebnisse (bis TOP_LIMIT vorberechnet,
+     *              größere Werte werden per TopK neu ausgewählt)
+     * @return Liste von (Nummer → Anzahl) Paaren
+     */
+    public List<Map.Entry<String, Integer>> getTopCallers(int limit) {
+        if (limit <= TOP_LIMIT) {
+            return topCallers.subList(0, Math.min(limit, topCallers.size()));
+        }
+        return buildTopCallers(limit);
+    }
+
+    /**
+     * Längste Gesamtgesprächsdauer, absteigend.
+     *
+     * @param limit Maximale Anzahl Ergebnisse (bis TOP_LIMIT vorberechnet)
+     * @return Liste von (Nummer → Gesamtdauer in Sekunden) Paaren
+     */
+    public List<Map.Entry<String, Long>> getTopDuration(int limit) {
+        if (limit <= TOP_LIMIT) {
+            return topDuration.subList(0, Math.min(limit, topDuration.size()));
+        }
+        return buildTopDuration(limit);
+    }
+
+    private List<Map.Entry<String, Integer>> buildTopCallers(int limit) {
+        return callerEntries(TopK.byCount(callCounts, limit));
+    }
+
+    private List<Map.Entry<String, Long>> buildTopDuration(int limit) {
+        // Nummern mit Anrufen, auch wenn die Dauer 0 ist (z.B. nur verpasste)
+        return durationEntries(TopK.byValue(durations, callCounts, limit));
+    }
+
+    private List<Map.Entry<String, Integer>> callerEntries(int[] ids) {
+        // Nur die Gewinner werden zu Map.Entry-Objekten
+        List<Map.Entry<String, Integer>> top = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            top.add(new AbstractMap.SimpleImmutableEntry<>(store.getNumberById(id), callCounts[id]));
+        }
+        return top;
+    }
+
+    private List<Map.Entry<String, Long>> durationEntries(int[] ids) {
+        List<Map.Entry<String, Long>> top = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            top.add(new AbstractMap.SimpleImmutableEntry<>(store.getNumberById(id), durations[id]));
+        }
+        return top;
+    }
+}
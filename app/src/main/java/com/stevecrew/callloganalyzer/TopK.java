@@ -0,0 +1,168 @@
+package com.stevecrew.callloganalyzer;
+
+import java.util.Arrays;
+
+/**
+ * Wählt die K größten Werte aus Zähler-Arrays (Array-Index = numberId).
+ *
+ * Statt alle Nummern in eine Liste zu kopieren und komplett zu sortieren,
+ * läuft ein Min-Heap mit höchstens K Einträgen über die Zähler: O(n log K)
+ * statt O(n log n), ohne Boxing. Nur die K Gewinner werden am Ende sortiert.
+ *
+ * Bei gleichem Wert entscheidet die numberId aufsteigend - die kleinere
+ * gewinnt.
+ */
+public class TopK {
+
+    /** Liefert den Wert zu einer numberId */
+    private interface Score {
+        long of(int id);
+    }
+
+    private TopK() {}
+
+    /**
+     * Die limit Nummern mit den meisten Anrufen.
+     *
+     * @param counts Anzahl pro numberId (nur Werte > 0 zählen)
+     * @return numberIds, absteigend nach Anzahl
+     */
+    public static int[] byCount(int[] counts, int limit) {
+        return select(counts, id -> counts[id], limit);
+    }
+
+    /**
+     * Die limit Nummern mit den größten Werten (z.B. Gesamtdauer).
+     *
+     * @param values Wert pro numberId
+     * @param counts Anzahl pro numberId - nur Nummern mit count > 0 kommen in Frage
+     * @return numberIds, absteigend nach Wert
+     */
+    public static int[] byValue(long[] values, int[] counts, int limit) {
+        return select(counts, id -> values[id], limit);
+    }
+
+    /**
+     * Aktualisiert eine Rangliste nach byCount(), nachdem die Anzahl von id
+     * gestiegen ist (alle anderen Anzahlen unverändert).
+     *
+     * @param top Bisherige Rangliste (wird nicht verändert)
+     * @return Neue Rangliste, höchstens limit Einträge
+     */
+    public static int[] raisedCount(int[] top, int id, int[] counts, int limit) {
+        return raised(top, id, other -> counts[other], limit);
+    }
+
+    /**
+     * Wie raisedCount(), für eine Rangliste nach byValue().
+     */
+    public static int[] raisedValue(int[] top, int id, long[] values, int limit) {
+        return raised(top, id, other -> values[other], limit);
+    }
+
+    /**
+     * Da nur der Wert von id gestiegen ist, bleibt die Reihenfolge der
+     * übrigen Einträge gültig: id entfernen und per binärer Suche neu
+     * einsortieren. Fällt dabei der schwächste Eintrag heraus, kann keine
+     * andere Nummer nachrücken, die nicht schon vorher dahinter stand.
+     */
+    private static int[] raised(int[] top, int id, Score score, int limit) {
+        if (limit <= 0) return top;
+
+        // Bisherigen Platz von id entfernen
+        int old = -1;
+        for (int i = 0; i < top.length; i++) {
+            if (top[i] == id) { old = i; break; }
+        }
+        int[] rest = top;
+        if (old >= 0) {
+            rest = new int[top.length - 1];
+            System.arraycopy(top, 0, rest, 0, old);
+            System.arraycopy(top, old + 1, rest, old, rest.length - old);
+        }
+
+        // Erster Platz, vor dem id steht
+        int low = 0;
+        int high = rest.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ranksBefore(rest[mid], id, score)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low >= limit) return top;  // Reicht nicht für die Rangliste
+
+        int[] result = new int[Math.min(limit, rest.length + 1)];
+        System.arraycopy(rest, 0, result, 0, low);
+        result[low] = id;
+        System.arraycopy(rest, low, result, low + 1, result.length - low - 1);
+        return result;
+    }
+
+    private static int[] select(int[] counts, Score score, int limit) {
+        if (limit <= 0) return new int[0];
+        int[] heap = new int[Math.min(limit, counts.length)];
+        int size = 0;
+
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] <= 0) continue;
+            if (size < heap.length) {
+                // Heap noch nicht voll: einfügen und nach oben schieben
+                heap[size] = id;
+                siftUp(heap, size, score);
+                size++;
+            } else if (ranksBefore(id, heap[0], score)) {
+                // Besser als der schwächste der bisherigen Top K: ersetzen
+                heap[0] = id;
+                siftDown(heap, size, score);
+            }
+        }
+
+        // Schwächsten immer wieder entnehmen → von hinten nach vorne auffüllen
+        int[] result = Arrays.copyOf(heap, size);
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i, score);
+        }
+        return result;
+    }
+
+    /** true wenn a in der Rangliste vor b steht */
+    private static boolean ranksBefore(int a, int b, Score score) {
+        long sa = score.of(a);
+        long sb = score.of(b);
+        return sa != sb ? sa > sb : a < b;
+    }
+
+    // Min-Heap: heap[0] ist der schwächste Eintrag
+    private static void siftUp(int[] heap, int index, Score score) {
+        int id = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBefore(heap[parent], id, score)) break;
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = id;
+    }
+
+    private static void siftDown(int[] heap, int size, Score score) {
+        if (size == 0) return;
+        int index = 0;
+        int id = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && ranksBefore(heap[child], heap[child + 1], score)) {
+                child++;
+            }
+            if (!ranksBefore(id, heap[child], score)) break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = id;
+    }
+}
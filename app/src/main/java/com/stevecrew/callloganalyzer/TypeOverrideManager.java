@@ -0,0 +1,174 @@
+package com.stevecrew.callloganalyzer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Verwaltet Regeln, die den Anruftyp bestimmter Nummern überschreiben
+ * ("Nummer → erzwungener Typ").
+ *
+ * Hintergrund: Manche Nummern (z.B. Festnetz-Durchwahl) werden vom
+ * System manchmal falsch als "eingehend" markiert wenn man selbst
+ * von dieser Nummer anruft. Mit einer Regel zählen solche Anrufe z.B.
+ * immer als ausgehend.
+ *
+ * Die Regeln werden zusammen mit der Blacklist in SharedPreferences
+ * gespeichert (gleiche Datei, eigener Schlüssel). Beim ersten Start wird
+ * die früher fest eingebaute Festnetz-Regel übernommen.
+ *
+ * Abgleich wie bei der Blacklist: Eine Regel greift, wenn die normalisierte
+ * Nummer das Muster enthält oder im Muster enthalten ist. Exakte Treffer
+ * werden direkt über eine Map gefunden. Greifen mehrere Regeln, gewinnt die
+ * mit dem längsten (spezifischsten) Muster, bei gleicher Länge das
+ * alphabetisch kleinere - unabhängig von der Reihenfolge des Anlegens.
+ */
+public class TypeOverrideManager {
+
+    // SharedPreferences Schlüssel (gleiche Datei wie BlacklistManager)
+    private static final String PREFS_NAME = "call_log_blacklist";
+    private static final String KEY_OVERRIDES = "type_overrides";
+
+    /** Früher fest eingebaute Nummern, die immer als ausgehend zählen */
+    private static final String[] DEFAULT_OUTGOING = {
+        "+49355691034",
+        "49355691034",
+        "0355691034"
+    };
+
+    private final SharedPreferences prefs;
+    // Normalisiertes Muster → erzwungener Typ (CallLogEntry.TYPE_*), längste Muster zuerst.
+    // Wird bei Änderungen komplett ersetzt, damit der Loader-Thread parallel lesen kann.
+    private volatile Map<String, Integer> rules;
+    // Wird bei jeder Änderung erhöht - Ergebnisse von getForcedType() dürfen so lange gecacht werden
+    private volatile int version = 0;
+
+    /**
+     * Erstellt einen neuen TypeOverrideManager und lädt die gespeicherten Regeln.
+     *
+     * @param context Android Context für SharedPreferences-Zugriff
+     */
+    public TypeOverrideManager(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        Map<String, Integer> loaded = new LinkedHashMap<>();
+        if (prefs.contains(KEY_OVERRIDES)) {
+            // Gespeichert als "muster=typ"
+            for (String entry : prefs.getStringSet(KEY_OVERRIDES, new HashSet<>())) {
+                int separator = entry.lastIndexOf('=');
+                if (separator <= 0) continue;  // Leeres Muster würde jede Nummer treffen
+                try {
+                    loaded.put(entry.substring(0, separator),
+                            Integer.parseInt(entry.substring(separator + 1)));
+                } catch (NumberFormatException e) {
+                    // Kaputten Eintrag ignorieren
+                }
+            }
+        } else {
+            for (String number : DEFAULT_OUTGOING) {
+                loaded.put(number, CallLogEntry.TYPE_OUTGOING);
+            }
+        }
+        rules = byPriority(loaded);
+    }
+
+    /**
+     * Fügt eine Regel hinzu (bzw. ersetzt die Regel für dieselbe Nummer).
+     *
+     * @param number Telefonnummer oder Teil davon (wird normalisiert)
+     * @param type Erzwungener Typ (CallLogEntry.TYPE_*)
+     * @return false wenn die Eingabe keine Ziffern enthält (z.B. "abc") -
+     *         ein leeres Muster würde jede Nummer treffen
+     */
+    public boolean addRule(String number, int type) {
+        String normalized = BlacklistManager.normalizeNumber(number);
+        if (normalized.isEmpty()) return false;
+
+        Map<String, Integer> updated = new LinkedHashMap<>(rules);
+        updated.put(normalized, type);
+        rules = byPriority(updated);
+        version++;
+        saveToPrefs();
+        return true;
+    }
+
+    /**
+     * Löscht alle Regeln (auch die übernommene Festnetz-Regel).
+     */
+    public void clear() {
+        rules = new LinkedHashMap<>();
+        version++;
+        saveToPrefs();
+    }
+
+    /**
+     * Gibt eine Kopie aller Regeln zurück (Muster → Typ, längste Muster zuerst).
+     */
+    public Map<String, Integer> getRules() {
+        return new LinkedHashMap<>(rules);
+    }
+
+    /**
+     * Versionsnummer der Regeln. Steigt bei jeder Änderung.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Ermittelt den erzwungenen Typ für eine Nummer.
+     *
+     * @param normalized Nummer nur mit Ziffern und Plus
+     * @return CallLogEntry.TYPE_*, oder -1 wenn keine Regel greift
+     */
+    public int getForcedType(String normalized) {
+        // Ohne Nummer (unterdrückt) würde jedes Muster die Nummer "enthalten"
+        if (normalized.isEmpty()) return -1;
+        Map<String, Integer> current = rules;
+
+        // Exakter Treffer: direkt aus der Map
+        Integer exact = current.get(normalized);
+        if (exact != null) return exact;
+
+        // Sonst wie bei der Blacklist: eine Nummer enthält die andere (längste Muster zuerst)
+        for (Map.Entry<String, Integer> rule : current.entrySet()) {
+            String pattern = rule.getKey();
+            if (normalized.contains(pattern) || pattern.contains(normalized)) {
+                return rule.getValue();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sortiert die Regeln nach Priorität: längstes Muster zuerst, bei
+     * gleicher Länge alphabetisch.
+     */
+    private static Map<String, Integer> byPriority(Map<String, Integer> rules) {
+        List<String> patterns = new ArrayList<>(rules.keySet());
+        patterns.sort((a, b) -> a.length() != b.length()
+                ? Integer.compare(b.length(), a.length()) : a.compareTo(b));
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        for (String pattern : patterns) {
+            sorted.put(pattern, rules.get(pattern));
+        }
+        return sorted;
+    }
+
+    /**
+     * Speichert die Regeln in SharedPreferences (asynchron mit apply()).
+     */
+    private void saveToPrefs() {
+        Set<String> entries = new HashSet<>();
+        for (Map.Entry<String, Integer> rule : rules.entrySet()) {
+            entries.add(rule.getKey() + "=" + rule.getValue());
+        }
+        prefs.edit().putStringSet(KEY_OVERRIDES, entries).apply();
+    }
+}
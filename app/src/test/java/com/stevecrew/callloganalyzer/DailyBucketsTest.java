@@ -0,0 +1,79 @@
+package com.stevecrew.callloganalyzer;
+
+import static com.stevecrew.callloganalyzer.TestCalls.assertSameHeatmap;
+import static com.stevecrew.callloganalyzer.TestCalls.assertSameStats;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class DailyBucketsTest {
+
+    @Test
+    public void withInsertedRowsMatchesRebuild() {
+        Random random = new Random(3);
+        for (int round = 0; round < 200; round++) {
+            TestCalls calls = TestCalls.random(random);
+            DailyBuckets updated = DailyBuckets.build(calls.oldStore, calls.oldHidden)
+                    .withInsertedRows(calls.newStore, calls.newHidden, calls.inserted);
+            DailyBuckets rebuilt = DailyBuckets.build(calls.newStore, calls.newHidden);
+
+            int size = calls.newStore.size();
+            for (int k = 0; k < 30; k++) {
+                int start = random.nextInt(size + 1);
+                int end = start + random.nextInt(size - start + 1);
+                String message = "Runde " + round + ", Zeilen " + start + "-" + end;
+                assertSameStats(message, rebuilt.summarizeRows(start, end),
+                        updated.summarizeRows(start, end));
+                assertSameHeatmap(message, rebuilt.heatmapRows(start, end),
+                        updated.heatmapRows(start, end));
+            }
+        }
+    }
+
+    @Test
+    public void summarizeRowsMatchesRecount() {
+        Random random = new Random(4);
+        for (int round = 0; round < 50; round++) {
+            TestCalls calls = TestCalls.random(random);
+            DailyBuckets buckets = DailyBuckets.build(calls.newStore, calls.newHidden);
+
+            int size = calls.newStore.size();
+            for (int k = 0; k < 30; k++) {
+                int start = random.nextInt(size + 1);
+                int end = start + random.nextInt(size - start + 1);
+                assertSameStats("Runde " + round + ", Zeilen " + start + "-" + end,
+                        TestCalls.countRows(calls.newStore, start, end, calls.newHidden),
+                        buckets.summarizeRows(start, end));
+            }
+        }
+    }
+
+    @Test
+    public void parallelBuildMatchesSequentialBuild() {
+        Random random = new Random(7);
+        // Von wenigen bis zu tausenden Anrufen pro Tag
+        for (long maxGapMs : new long[] {20_000_000L, 2_000_000L, 60_000L}) {
+            TestCalls calls = TestCalls.random(random, 60_000 + random.nextInt(60_000), 1,
+                    2000, maxGapMs);
+            DailyBuckets sequential = DailyBuckets.build(calls.newStore, calls.newHidden, false);
+            DailyBuckets parallel = DailyBuckets.build(calls.newStore, calls.newHidden, true);
+
+            int size = calls.newStore.size();
+            assertEquals(sequential.getDayCount(), parallel.getDayCount());
+            assertSameHeatmap("Alle Zeilen", sequential.heatmapRows(0, size),
+                    parallel.heatmapRows(0, size));
+            for (int k = 0; k < 200; k++) {
+                int start = random.nextInt(size + 1);
+                int end = start + random.nextInt(size - start + 1);
+                String message = "Abstand " + maxGapMs + ", Zeilen " + start + "-" + end;
+                assertSameStats(message, sequential.summarizeRows(start, end),
+                        parallel.summarizeRows(start, end));
+                assertSameHeatmap(message, sequential.heatmapRows(start, end),
+                        parallel.heatmapRows(start, end));
+            }
+        }
+    }
+}
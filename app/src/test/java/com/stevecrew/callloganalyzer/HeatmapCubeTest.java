@@ -0,0 +1,24 @@
+package com.stevecrew.callloganalyzer;
+
+import static com.stevecrew.callloganalyzer.TestCalls.assertSameHeatmap;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class HeatmapCubeTest {
+
+    @Test
+    public void withInsertedRowsMatchesRebuild() {
+        Random random = new Random(5);
+        for (int round = 0; round < 200; round++) {
+            TestCalls calls = TestCalls.random(random);
+            DailyBuckets rebuilt = DailyBuckets.build(calls.newStore, calls.newHidden);
+            HeatmapCube updated = DailyBuckets.build(calls.oldStore, calls.oldHidden)
+                    .heatmapRows(0, calls.oldStore.size())
+                    .withInsertedRows(rebuilt, calls.inserted);
+            assertSameHeatmap("Runde " + round,
+                    rebuilt.heatmapRows(0, calls.newStore.size()), updated);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.stevecrew.callloganalyzer;
+
+import static com.stevecrew.callloganalyzer.TestCalls.ids;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class NumberPostingsTest {
+
+    @Test
+    public void withInsertedRowsMatchesRebuild() {
+        Random random = new Random(6);
+        for (int round = 0; round < 200; round++) {
+            TestCalls calls = TestCalls.random(random);
+            NumberPostings updated = NumberPostings.build(calls.oldStore)
+                    .withInsertedRows(calls.newStore, calls.inserted);
+            NumberPostings rebuilt = NumberPostings.build(calls.newStore);
+
+            int size = calls.newStore.size();
+            for (int id = 0; id < calls.newStore.getNumberCount(); id++) {
+                int start = random.nextInt(size + 1);
+                int end = start + random.nextInt(size - start + 1);
+                for (boolean byDuration : new boolean[] {false, true}) {
+                    String message = "Runde " + round + ", Nummer " + id;
+                    assertSameSlice(message, rebuilt.slice(id, start, end, byDuration),
+                            updated.slice(id, start, end, byDuration));
+                    assertSameSlice(message, rebuilt.slice(id, 0, size, byDuration),
+                            updated.slice(id, 0, size, byDuration));
+                }
+            }
+        }
+    }
+
+    private static void assertSameSlice(String message, NumberPostings.Slice expected,
+                                        NumberPostings.Slice actual) {
+        assertEquals(message, expected.getCallCount(), actual.getCallCount());
+        assertEquals(message, expected.getIncomingCount(), actual.getIncomingCount());
+        assertEquals(message, expected.getOutgoingCount(), actual.getOutgoingCount());
+        assertEquals(message, expected.getMissedCount(), actual.getMissedCount());
+        assertEquals(message, expected.getRejectedCount(), actual.getRejectedCount());
+        assertEquals(message, expected.getTotalDuration(), actual.getTotalDuration());
+        assertEquals(message, ids(expected), ids(actual));
+    }
+}
@@ -0,0 +1,28 @@
+package com.stevecrew.callloganalyzer;
+
+import static com.stevecrew.callloganalyzer.TestCalls.assertSameStats;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PeriodStatsTableTest {
+
+    @Test
+    public void withInsertedRowsMatchesRebuild() {
+        Random random = new Random(2);
+        long[] cutoffs = TestCalls.cutoffs();
+        for (int round = 0; round < 200; round++) {
+            TestCalls calls = TestCalls.random(random);
+            PeriodStatsTable updated = PeriodStatsTable.build(calls.oldStore, calls.oldHidden, cutoffs)
+                    .withInsertedRows(calls.newStore, calls.newHidden, cutoffs, calls.inserted);
+            PeriodStatsTable rebuilt = PeriodStatsTable.build(calls.newStore, calls.newHidden, cutoffs);
+
+            for (long cutoff : cutoffs) {
+                int end = calls.newStore.countSince(cutoff);
+                assertSameStats("Runde " + round + ", Stichtag " + cutoff,
+                        rebuilt.get(0, end), updated.get(0, end));
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.stevecrew.callloganalyzer;
+
+import static com.stevecrew.callloganalyzer.TestCalls.assertSameStats;
+import static com.stevecrew.callloganalyzer.TestCalls.countRows;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class StatsSnapshotTest {
+
+    @Test
+    public void withInsertedRowsMatchesRecount() {
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            TestCalls calls = TestCalls.random(random);
+            StatsSnapshot updated = countRows(calls.oldStore, 0, calls.oldStore.size(), calls.oldHidden)
+                    .withInsertedRows(calls.newStore, calls.inserted, calls.newHidden);
+            assertSameStats("Runde " + round,
+                    countRows(calls.newStore, 0, calls.newStore.size(), calls.newHidden), updated);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.stevecrew.callloganalyzer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Zufällige Anruflisten für die Tests der inkrementellen Pfade.
+ *
+ * Ein Szenario besteht aus einem alten Store und einem neuen Store, der
+ * vorne ein paar neue Anrufe hat - so wie ihn CallLogHelper nach einem
+ * Content-Observer-Update baut (new Builder(old), neue Zeilen zuerst).
+ * Blacklist und Typ-Regeln hängen nur von der Nummer ab und sind damit
+ * für beide Stores gleich.
+ */
+final class TestCalls {
+
+    /** Fester Zeitpunkt, damit die Tests nicht von der Uhrzeit abhängen */
+    static final long NOW = 1_700_000_000_000L;
+
+    static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    /** Alter Store (Regeln angewendet) */
+    final CallLogStore oldStore;
+    /** Neuer Store = inserted neue Zeilen + oldStore, Regeln angewendet */
+    final CallLogStore newStore;
+    /** Anzahl neuer Zeilen am Anfang von newStore */
+    final int inserted;
+    final boolean[] oldHidden;
+    final boolean[] newHidden;
+
+    private TestCalls(CallLogStore oldStore, CallLogStore newStore, int inserted,
+                      boolean[] oldHidden, boolean[] newHidden) {
+        this.oldStore = oldStore;
+        this.newStore = newStore;
+        this.inserted = inserted;
+        this.oldHidden = oldHidden;
+        this.newHidden = newHidden;
+    }
+
+    /**
+     * Bis zu 3000 alte Anrufe über etwa ein Jahr, 1-50 neue, bis zu 400 Nummern.
+     */
+    static TestCalls random(Random random) {
+        return random(random, random.nextInt(3000), 1 + random.nextInt(50),
+                1 + random.nextInt(400), 20_000_000L);
+    }
+
+    /**
+     * Erzeugt ein Szenario mit oldSize alten und inserted neuen Anrufen.
+     *
+     * @param numbers Anzahl verschiedener Nummern
+     * @param maxGapMs Maximaler Abstand zwischen zwei Anrufen
+     */
+    static TestCalls random(Random random, int oldSize, int inserted, int numbers, long maxGapMs) {
+        int size = oldSize + inserted;
+        String[] callNumbers = new String[size];
+        int[] types = new int[size];
+        int[] durations = new int[size];
+        long[] timestamps = new long[size];
+        long time = NOW;
+        for (int i = 0; i < size; i++) {
+            time -= 1 + (long) (random.nextDouble() * maxGapMs);
+            timestamps[i] = time;
+            callNumbers[i] = "+49" + random.nextInt(numbers);
+            // Auch unbekannte Typen (5, 6) kommen im echten Anrufprotokoll vor
+            types[i] = 1 + random.nextInt(6);
+            durations[i] = types[i] == CallLogEntry.TYPE_MISSED ? 0 : random.nextInt(900);
+        }
+
+        CallLogStore.Builder oldBuilder = new CallLogStore.Builder(null);
+        for (int i = inserted; i < size; i++) {
+            oldBuilder.add(i, callNumbers[i], "", types[i], durations[i], timestamps[i]);
+        }
+        CallLogStore rawOld = oldBuilder.build();
+        CallLogStore.Builder newBuilder = new CallLogStore.Builder(rawOld);
+        for (int i = 0; i < inserted; i++) {
+            newBuilder.add(i, callNumbers[i], "", types[i], durations[i], timestamps[i]);
+        }
+        CallLogStore rawNew = rawOld.prependedWith(newBuilder.build());
+
+        CallLogStore oldStore = rawOld.withForcedTypes(forcedTypes(rawOld));
+        CallLogStore newStore = rawNew.withForcedTypes(forcedTypes(rawNew), oldStore, inserted);
+        return new TestCalls(oldStore, newStore, inserted, hidden(oldStore), hidden(newStore));
+    }
+
+    /** Jede siebte Nummer (nach Hash) ist ausgeblendet */
+    private static boolean[] hidden(CallLogStore store) {
+        boolean[] hidden = new boolean[store.getNumberCount()];
+        for (int id = 0; id < hidden.length; id++) {
+            hidden[id] = Math.floorMod(store.getNumberById(id).hashCode(), 7) == 0;
+        }
+        return hidden;
+    }
+
+    /** Jede fünfte Nummer (nach Hash) hat eine Regel "immer ausgehend" */
+    private static byte[] forcedTypes(CallLogStore store) {
+        byte[] forced = new byte[store.getNumberCount()];
+        for (int id = 0; id < forced.length; id++) {
+            forced[id] = Math.floorMod(store.getNumberById(id).hashCode(), 5) == 0
+                    ? (byte) CallLogEntry.TYPE_OUTGOING : -1;
+        }
+        return forced;
+    }
+
+    /** Stichtage wie in CallLogHelper: alle Anrufe, 7, 30, 90, 180, 365 Tage */
+    static long[] cutoffs() {
+        return new long[] {0, NOW - 7 * DAY_MS, NOW - 30 * DAY_MS, NOW - 90 * DAY_MS,
+                NOW - 180 * DAY_MS, NOW - 365 * DAY_MS};
+    }
+
+    /** Statistik der Zeilen [start, end), Zeile für Zeile gezählt */
+    static StatsSnapshot countRows(CallLogStore store, int start, int end, boolean[] hidden) {
+        StatsSnapshot.Builder builder = new StatsSnapshot.Builder(store);
+        builder.addRows(start, end, hidden);
+        return builder.build();
+    }
+
+    static void assertSameStats(String message, StatsSnapshot expected, StatsSnapshot actual) {
+        assertEquals(message, expected.getIncomingCount(), actual.getIncomingCount());
+        assertEquals(message, expected.getOutgoingCount(), actual.getOutgoingCount());
+        assertEquals(message, expected.getMissedCount(), actual.getMissedCount());
+        assertEquals(message, expected.getRejectedCount(), actual.getRejectedCount());
+        assertEquals(message, expected.getTotalCalls(), actual.getTotalCalls());
+        assertEquals(message, expected.getTotalDuration(), actual.getTotalDuration());
+        assertEquals(message, expected.getTopCallers(50), actual.getTopCallers(50));
+        assertEquals(message, expected.getTopDuration(50), actual.getTopDuration(50));
+    }
+
+    static void assertSameHeatmap(String message, HeatmapCube expected, HeatmapCube actual) {
+        for (int weekday = 0; weekday < HeatmapCube.WEEKDAYS; weekday++) {
+            for (int hour = 0; hour < HeatmapCube.HOURS; hour++) {
+                for (int type = 0; type < HeatmapCube.TYPES; type++) {
+                    assertEquals(message + " [" + weekday + "/" + hour + "/" + type + "]",
+                            expected.getCount(weekday, hour, type),
+                            actual.getCount(weekday, hour, type));
+                }
+            }
+        }
+    }
+
+    static List<Long> ids(NumberPostings.Slice slice) {
+        List<Long> ids = new ArrayList<>();
+        for (CallLogEntry call : slice.getCalls()) ids.add(call.getId());
+        return ids;
+    }
+}